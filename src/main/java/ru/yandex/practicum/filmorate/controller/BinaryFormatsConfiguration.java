@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+// Двоичные форматы для внутренних потребителей: Accept/Content-Type application/cbor или
+// application/x-jackson-smile. Конвертеры стоят после JSON, поэтому без явного Accept ответ остается JSON.
+// Схема та же, что у JSON (модели и их Jackson-аннотации): маппер строится тем же билдером Spring Boot
+@Configuration
+@RequiredArgsConstructor
+public class BinaryFormatsConfiguration implements WebMvcConfigurer {
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+        int json = 0;
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2HttpMessageConverter) {
+                json = i + 1;
+            }
+        }
+        converters.add(json, new MappingJackson2SmileHttpMessageConverter(
+                objectMapperBuilder.factory(new SmileFactory()).build()));
+        converters.add(json, new MappingJackson2CborHttpMessageConverter(
+                objectMapperBuilder.factory(new CBORFactory()).build()));
+    }
+}
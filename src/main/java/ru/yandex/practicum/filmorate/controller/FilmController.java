@@ -1,28 +1,51 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.log.Logger;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.util.ETags;
+import ru.yandex.practicum.filmorate.util.Projections;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 
 @RestController
+@Validated
 @RequestMapping("/films")
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
-    @GetMapping//получить полный список фильмов
-    public Collection<Film> getFilms() {
-        Logger.logRequest(HttpMethod.GET, "/films", "no body");
-        return filmService.getFilms();
+    @GetMapping//получить полный список фильмов или фильмы с перечисленными id (в порядке перечисления)
+    public Collection<?> getFilms(@RequestParam(required = false) List<Long> ids,
+                                  @RequestParam(required = false) List<String> fields) {
+        Set<FilmField> projection = FilmField.parse(fields);
+        Collection<Film> films;
+        if (ids != null) {
+            Logger.logRequest(HttpMethod.GET, "/films?ids=" + ids + "&fields=" + fields, "no body");
+            films = filmService.getFilmsByIds(ids, projection);
+        } else {
+            Logger.logRequest(HttpMethod.GET, "/films?fields=" + fields, "no body");
+            films = filmService.getFilms(projection);
+        }
+        return fields == null ? films : Projections.project(objectMapper, films, FilmField.jsonNames(projection));
     }
 
     @PostMapping//добавить фильм
@@ -32,15 +55,25 @@ public class FilmController {
     }
 
     @PutMapping//обновить фильм или добавить фильм (если он не был добавлен ранее)
-    public Film updateFilm(@Valid @RequestBody Film film) {
+    public ResponseEntity<Film> updateFilm(@Valid @RequestBody Film film,
+                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         Logger.logRequest(HttpMethod.PUT, "/films", film.toString());
-        return filmService.updateFilm(film);
+        Long expectedVersion = ETags.parseIfMatch(ifMatch);
+        if (expectedVersion != null) {
+            film.setVersion(expectedVersion);
+        }
+        Film updatedFilm = filmService.updateFilm(film);
+        return ResponseEntity.ok().eTag(ETags.of(updatedFilm.getVersion())).body(updatedFilm);
     }
 
-    @GetMapping("/{id}") //получить фильм по id
-    public Film getFilmById(@PathVariable long id) {
-        Logger.logRequest(HttpMethod.GET, "/films/" + id, "no body");
-        return filmService.getFilmById(id);
+    @GetMapping("/{id}") //получить фильм по id (fields - только перечисленные поля)
+    public ResponseEntity<?> getFilmById(@PathVariable long id,
+                                         @RequestParam(required = false) List<String> fields) {
+        Logger.logRequest(HttpMethod.GET, "/films/" + id + "?fields=" + fields, "no body");
+        Set<FilmField> projection = FilmField.parse(fields);
+        Film film = filmService.getFilmById(id, projection);
+        return ResponseEntity.ok().eTag(ETags.of(film.getVersion())).body(fields == null
+                ? film : Projections.project(objectMapper, film, FilmField.jsonNames(projection)));
     }
 
     @PutMapping("/{id}/like/{userId}")//поставить лайк
@@ -57,15 +90,40 @@ public class FilmController {
         filmService.unlike(id, userId);
     }
 
-    @GetMapping("/{id}/likes")//получить список id пользователей, поставивших лайк
-    public List<Long> getListOfLikes(@PathVariable long id) {
-        Logger.logRequest(HttpMethod.GET, "/films/" + id + "/likes", "no body");
-        return filmService.getListOfLikes(id);
+    @PostMapping("/likes:batch")//поставить и снять пачку лайков, результат по каждому элементу
+    public List<BatchItemResult> applyLikes(@RequestBody List<LikeBatchItem> items) {
+        Logger.logRequest(HttpMethod.POST, "/films/likes:batch", items.toString());
+        return filmService.applyLikes(items);
     }
 
-    @GetMapping("/popular") //получить список из первых count фильмов по количеству лайков
-    public List<Film> getTheBestFilms(@RequestParam(defaultValue = "10") @Positive int count) {
-        Logger.logRequest(HttpMethod.GET, "/films/popular?count=" + count, "no body");
-        return filmService.getTheBestFilms(count);
+    @GetMapping("/{id}/likes")//получить id пользователей, поставивших лайк, по возрастанию после курсора after
+    public List<Long> getListOfLikes(@PathVariable long id,
+                                     @RequestParam(defaultValue = "0") @PositiveOrZero long after,
+                                     @RequestParam(defaultValue = "100") @Positive @Max(1000) int limit) {
+        Logger.logRequest(HttpMethod.GET, "/films/" + id + "/likes?after=" + after + "&limit=" + limit, "no body");
+        return filmService.getListOfLikes(id, after, limit);
+    }
+
+    @GetMapping("/popular") //получить список из первых count фильмов по количеству лайков (с фильтром по жанру и году)
+    public List<Film> getTheBestFilms(@RequestParam(defaultValue = "10") @Positive int count,
+                                      @RequestParam(required = false) Integer genreId,
+                                      @RequestParam(required = false) Integer year) {
+        Logger.logRequest(HttpMethod.GET, "/films/popular?count=" + count + "&genreId=" + genreId + "&year=" + year,
+                "no body");
+        return filmService.getTheBestFilms(count, genreId, year);
+    }
+
+    @GetMapping("/trending") //получить фильмы, набравшие больше всего лайков за окно 1h, 24h или 7d
+    public List<Film> getTrendingFilms(@RequestParam(defaultValue = "24h") String window,
+                                       @RequestParam(defaultValue = "10") @Positive int count) {
+        Logger.logRequest(HttpMethod.GET, "/films/trending?window=" + window + "&count=" + count, "no body");
+        return filmService.getTrendingFilms(window, count);
+    }
+
+    @GetMapping("/search") //найти фильмы по словам из названия и описания
+    public List<Film> searchFilms(@RequestParam String q,
+                                  @RequestParam(defaultValue = "10") @Positive int count) {
+        Logger.logRequest(HttpMethod.GET, "/films/search?q=" + q + "&count=" + count, "no body");
+        return filmService.searchFilms(q, count);
     }
 }
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.filter.AdmissionMetrics;
+import ru.yandex.practicum.filmorate.storage.writebehind.WriteBehindQueue;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+    private final AdmissionMetrics admissionMetrics;
+    private final ObjectProvider<WriteBehindQueue> writeBehindQueue;
+    private final DomainEventBus eventBus;
+
+    @GetMapping("/admission")//получить число пропущенных и отброшенных запросов по классам эндпоинтов
+    public Map<String, Map<String, Long>> getAdmissionMetrics() {
+        return admissionMetrics.snapshot();
+    }
+
+    @GetMapping("/write-behind")//получить длину очереди отложенной записи, отставание и число записанных изменений
+    public Map<String, Long> getWriteBehindMetrics() {
+        WriteBehindQueue queue = writeBehindQueue.getIfAvailable();
+        if (queue == null) {
+            throw new ObjectNotFoundException("Write-behind storage is not enabled");
+        }
+        return queue.snapshot();
+    }
+
+    @GetMapping("/events")//получить число опубликованных событий и очереди асинхронных подписчиков
+    public Map<String, Long> getEventMetrics() {
+        return eventBus.snapshot();
+    }
+}
@@ -1,26 +1,55 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.log.Logger;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendBatchItem;
+import ru.yandex.practicum.filmorate.model.MutualFriends;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.util.ETags;
+import ru.yandex.practicum.filmorate.util.Projections;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
+@Validated
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
+    // Списки друзей по умолчанию не содержат вложенных списков друзей
+    private static final Set<UserField> FRIEND_FIELDS = EnumSet.complementOf(EnumSet.of(UserField.FRIENDS));
+
     private final UserService userService;
+    private final FilmService filmService;
+    private final FeedService feedService;
+    private final ObjectMapper objectMapper;
 
-    @GetMapping//получить полный список пользователей
-    public Collection<User> getUsers() {
-        Logger.logRequest(HttpMethod.GET, "/users", "no body");
-        return userService.getUsers();
+    @GetMapping//получить полный список пользователей (fields - только перечисленные поля)
+    public Collection<?> getUsers(@RequestParam(required = false) List<String> fields) {
+        Logger.logRequest(HttpMethod.GET, "/users?fields=" + fields, "no body");
+        Set<UserField> projection = UserField.parse(fields);
+        Collection<User> users = userService.getUsers(projection);
+        return fields == null ? users : Projections.project(objectMapper, users, UserField.jsonNames(projection));
     }
 
     @PostMapping//добавить пользователя
@@ -30,15 +59,25 @@ public class UserController {
     }
 
     @PutMapping//обновить пользователя или добавить пользователя (если он не был добавлен ранее)
-    public User updateUser(@Valid @RequestBody User user) {
+    public ResponseEntity<User> updateUser(@Valid @RequestBody User user,
+                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         Logger.logRequest(HttpMethod.PUT, "/users", user.toString());
-        return userService.updateUser(user);
+        Long expectedVersion = ETags.parseIfMatch(ifMatch);
+        if (expectedVersion != null) {
+            user.setVersion(expectedVersion);
+        }
+        User updatedUser = userService.updateUser(user);
+        return ResponseEntity.ok().eTag(ETags.of(updatedUser.getVersion())).body(updatedUser);
     }
 
-    @GetMapping("/{id}") //получить пользователя по id
-    public User getUserById(@PathVariable long id) {
-        Logger.logRequest(HttpMethod.GET, "/users/" + id, "no body");
-        return userService.getUserById(id);
+    @GetMapping("/{id}") //получить пользователя по id (fields - только перечисленные поля)
+    public ResponseEntity<?> getUserById(@PathVariable long id,
+                                         @RequestParam(required = false) List<String> fields) {
+        Logger.logRequest(HttpMethod.GET, "/users/" + id + "?fields=" + fields, "no body");
+        Set<UserField> projection = UserField.parse(fields);
+        User user = userService.getUserById(id, projection);
+        return ResponseEntity.ok().eTag(ETags.of(user.getVersion())).body(fields == null
+                ? user : Projections.project(objectMapper, user, UserField.jsonNames(projection)));
     }
 
     @PutMapping("/{id}/friends/{friendId}")//добавить в друзья
@@ -55,16 +94,82 @@ public class UserController {
         userService.removeFromFriends(id, friendId);
     }
 
-    @GetMapping("/{id}/friends")//получить список друзей
-    public List<User> getListOfFriends(@PathVariable long id) {
-        Logger.logRequest(HttpMethod.GET, "/users/" + id + "/friends", "no body");
-        return userService.getListOfFriends(id);
+    @PostMapping("/{id}/friends:batch")//добавить и удалить пачку друзей, результат по каждому элементу
+    public List<BatchItemResult> applyFriends(@PathVariable long id,
+                                              @RequestBody List<FriendBatchItem> items) {
+        Logger.logRequest(HttpMethod.POST, "/users/" + id + "/friends:batch", items.toString());
+        return userService.applyFriends(id, items);
+    }
+
+    @GetMapping("/{id}/friends")//получить друзей по возрастанию id после курсора after (без их списков друзей)
+    public List<Map<String, Object>> getListOfFriends(@PathVariable long id,
+                                                      @RequestParam(defaultValue = "0") @PositiveOrZero long after,
+                                                      @RequestParam(defaultValue = "100") @Positive @Max(1000) int limit,
+                                                      @RequestParam(required = false) List<String> fields) {
+        Logger.logRequest(HttpMethod.GET, "/users/" + id + "/friends?after=" + after + "&limit=" + limit +
+                "&fields=" + fields, "no body");
+        Set<UserField> projection = UserField.parse(fields, FRIEND_FIELDS);
+        return Projections.project(objectMapper, userService.getListOfFriends(id, after, limit, projection),
+                UserField.jsonNames(projection));
+    }
+
+    @GetMapping("/{id}/friends/common/{otherId}")//получить общих друзей по возрастанию id после курсора after
+    public List<Map<String, Object>> getAListOfMutualFriends(@PathVariable long id,
+                                                             @PathVariable long otherId,
+                                                             @RequestParam(defaultValue = "0") @PositiveOrZero long after,
+                                                             @RequestParam(defaultValue = "100") @Positive @Max(1000)
+                                                             int limit,
+                                                             @RequestParam(required = false) List<String> fields) {
+        Logger.logRequest(HttpMethod.GET, "/users/" + id + "/friends/common/" + otherId + "?after=" + after +
+                "&limit=" + limit + "&fields=" + fields, "no body");
+        Set<UserField> projection = UserField.parse(fields, FRIEND_FIELDS);
+        return Projections.project(objectMapper,
+                userService.getAListOfMutualFriends(id, otherId, after, limit, projection),
+                UserField.jsonNames(projection));
+    }
+
+    @GetMapping("/{id}/friends/common")//получить число общих друзей (и их id при withIds) с каждым из otherIds
+    public List<MutualFriends> getMutualFriendCounts(@PathVariable long id,
+                                                     @RequestParam List<Long> otherIds,
+                                                     @RequestParam(defaultValue = "false") boolean withIds) {
+        Logger.logRequest(HttpMethod.GET, "/users/" + id + "/friends/common?otherIds=" + otherIds + "&withIds=" +
+                withIds, "no body");
+        return userService.getMutualFriendCounts(id, otherIds, withIds);
+    }
+
+    @GetMapping("/{id}/path/{otherId}")//получить кратчайшую цепочку друзей от пользователя до otherId
+    public List<Map<String, Object>> getPath(@PathVariable long id,
+                                             @PathVariable long otherId,
+                                             @RequestParam(required = false) List<String> fields) {
+        Logger.logRequest(HttpMethod.GET, "/users/" + id + "/path/" + otherId + "?fields=" + fields, "no body");
+        Set<UserField> projection = UserField.parse(fields, FRIEND_FIELDS);
+        return Projections.project(objectMapper, userService.getPath(id, otherId, projection),
+                UserField.jsonNames(projection));
+    }
+
+    @GetMapping("/{id}/friends/suggestions")//получить друзей друзей, ранжированных по числу общих друзей
+    public List<Map<String, Object>> getFriendSuggestions(@PathVariable long id,
+                                                          @RequestParam(defaultValue = "10") @Positive int count,
+                                                          @RequestParam(required = false) List<String> fields) {
+        Logger.logRequest(HttpMethod.GET, "/users/" + id + "/friends/suggestions?count=" + count + "&fields=" +
+                fields, "no body");
+        Set<UserField> projection = UserField.parse(fields, FRIEND_FIELDS);
+        return Projections.project(objectMapper, userService.getFriendSuggestions(id, count, projection),
+                UserField.jsonNames(projection));
+    }
+
+    @GetMapping("/{id}/recommendations")//получить рекомендации фильмов по лайкам похожих пользователей
+    public List<Film> getRecommendations(@PathVariable long id,
+                                         @RequestParam(defaultValue = "10") @Positive int count) {
+        Logger.logRequest(HttpMethod.GET, "/users/" + id + "/recommendations?count=" + count, "no body");
+        return filmService.getRecommendations(id, count);
     }
 
-    @GetMapping("/{id}/friends/common/{otherId}")//получить список общих друзей
-    public List<User> getAListOfMutualFriends(@PathVariable long id,
-                                              @PathVariable long otherId) {
-        Logger.logRequest(HttpMethod.GET, "/users/" + id + "/friends/common/" + otherId, "no body");
-        return userService.getAListOfMutualFriends(id, otherId);
+    @GetMapping("/{id}/feed")//получить ленту событий пользователя после курсора after (id последнего события)
+    public List<Event> getFeed(@PathVariable long id,
+                               @RequestParam(defaultValue = "0") @PositiveOrZero long after,
+                               @RequestParam(defaultValue = "20") @Positive @Max(100) int limit) {
+        Logger.logRequest(HttpMethod.GET, "/users/" + id + "/feed?after=" + after + "&limit=" + limit, "no body");
+        return feedService.getFeed(id, after, limit);
     }
 }
@@ -0,0 +1,5 @@
+package ru.yandex.practicum.filmorate.event;
+
+// Изменение предметной области, уже сохраненное в хранилище. Подписчики находятся по точному классу события
+public interface DomainEvent {
+}
@@ -0,0 +1,209 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Шина событий предметной области внутри процесса. Синхронные подписчики вызываются в потоке публикации
+// в порядке подписки, асинхронные получают события пакетами в своем потоке в порядке публикации.
+// Внутри транзакции событие доставляется только после ее фиксации
+@Component
+@Slf4j
+public class DomainEventBus {
+    private static final long POLL_MILLIS = 100;
+    private static final long SHUTDOWN_MILLIS = 5000;
+
+    private final int asyncCapacity;
+    private final Map<Class<?>, List<Consumer<DomainEvent>>> subscribers = new ConcurrentHashMap<>();
+    private final List<AsyncSubscriber<?>> asyncSubscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public DomainEventBus(@Value("${filmorate.events.async-capacity:10000}") int asyncCapacity) {
+        this.asyncCapacity = asyncCapacity;
+    }
+
+    public <E extends DomainEvent> void subscribe(Class<E> type, Consumer<? super E> subscriber) {
+        subscribers.computeIfAbsent(type, key -> new CopyOnWriteArrayList<>())
+                .add(event -> subscriber.accept(type.cast(event)));
+    }
+
+    // Подписчик получает от 1 до batchSize событий за вызов. События всех перечисленных типов идут через одну
+    // очередь, поэтому, например, лайк и его снятие не переставляются. Если подписчик отстал на async-capacity
+    // событий, публикация ждет места в его очереди
+    public <E extends DomainEvent> void subscribeAsync(String name, List<Class<? extends E>> types, int batchSize,
+                                                      Consumer<List<E>> subscriber) {
+        AsyncSubscriber<E> async = new AsyncSubscriber<>(name, batchSize, subscriber);
+        asyncSubscribers.add(async);
+        types.forEach(type -> subscribe(type, async::offer));
+        async.start();
+    }
+
+    public void publish(DomainEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(event);
+                }
+            });
+            return;
+        }
+        dispatch(event);
+    }
+
+    // Ждет, пока асинхронные подписчики обработают все опубликованные события
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (AsyncSubscriber<?> async : asyncSubscribers) {
+            if (!async.flush(deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("published", published.get());
+        snapshot.put("failed", failed.get());
+        for (AsyncSubscriber<?> async : asyncSubscribers) {
+            snapshot.put(async.name + ".pending", async.pending.get());
+            snapshot.put(async.name + ".delivered", async.delivered.get());
+            snapshot.put(async.name + ".batches", async.batches.get());
+        }
+        return snapshot;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (AsyncSubscriber<?> async : asyncSubscribers) {
+            async.stop();
+        }
+    }
+
+    // Ошибка подписчика не отменяет уже сохраненное изменение и не мешает остальным подписчикам
+    private void dispatch(DomainEvent event) {
+        published.incrementAndGet();
+        List<Consumer<DomainEvent>> eventSubscribers = subscribers.get(event.getClass());
+        if (eventSubscribers == null) {
+            return;
+        }
+        for (Consumer<DomainEvent> subscriber : eventSubscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.error("Event subscriber failed on {}", event, e);
+            }
+        }
+    }
+
+    private final class AsyncSubscriber<E> {
+        private final String name;
+        private final int batchSize;
+        private final Consumer<List<E>> subscriber;
+        private final BlockingQueue<E> queue = new LinkedBlockingQueue<>(asyncCapacity);
+        private final Object progress = new Object();
+        private final AtomicLong pending = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private volatile boolean running;
+        private Thread thread;
+
+        private AsyncSubscriber(String name, int batchSize, Consumer<List<E>> subscriber) {
+            this.name = name;
+            this.batchSize = batchSize;
+            this.subscriber = subscriber;
+        }
+
+        private void start() {
+            running = true;
+            thread = new Thread(this::run, "events-" + name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void stop() throws InterruptedException {
+            running = false;
+            thread.join(SHUTDOWN_MILLIS);
+            if (thread.isAlive()) {
+                thread.interrupt();
+                log.warn("Event subscriber {} stopped with {} events not delivered", name, pending.get());
+            }
+        }
+
+        private void offer(E event) {
+            if (!running) {
+                log.warn("Event subscriber {} is stopped, {} dropped", name, event);
+                return;
+            }
+            pending.incrementAndGet();
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                pending.decrementAndGet();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while publishing to " + name, e);
+            }
+        }
+
+        private boolean flush(long deadline) throws InterruptedException {
+            synchronized (progress) {
+                while (pending.get() > 0) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    progress.wait(remaining);
+                }
+            }
+            return true;
+        }
+
+        private void run() {
+            List<E> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
+                E first;
+                try {
+                    first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                batches.incrementAndGet();
+                try {
+                    subscriber.accept(batch);
+                    delivered.addAndGet(batch.size());
+                } catch (RuntimeException e) {
+                    failed.addAndGet(batch.size());
+                    log.error("Event subscriber {} failed on batch of {} events", name, batch.size(), e);
+                }
+                pending.addAndGet(-batch.size());
+                batch.clear();
+                synchronized (progress) {
+                    progress.notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.index.FilmCoOccurrenceIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.FriendsGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularityLeaderboards;
+import ru.yandex.practicum.filmorate.storage.index.TrendingCounters;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+// Подписки производных индексов. Индексы, по которым отвечают сразу после изменения (поиск, рейтинги,
+// рекомендации, граф дружбы), обновляются синхронно; тренды - асинхронно пакетами из одной упорядоченной
+// очереди лайков и их снятий. Лента событий пишется сервисами напрямую: ее ошибка должна дойти до клиента
+@Component
+@RequiredArgsConstructor
+public class DomainEventSubscriptions {
+    private final DomainEventBus eventBus;
+    private final FilmSearchIndex searchIndex;
+    private final PopularityLeaderboards leaderboards;
+    private final FilmCoOccurrenceIndex coOccurrenceIndex;
+    private final TrendingCounters trendingCounters;
+    private final FriendsGraphIndex friendsGraphIndex;
+
+    @Value("${filmorate.events.trending-batch-size:256}")
+    private int trendingBatchSize;
+
+    @PostConstruct
+    public void subscribe() {
+        eventBus.subscribe(FilmSaved.class, event -> searchIndex.index(event.getFilm()));
+        eventBus.subscribe(FilmSaved.class, event -> leaderboards.updateFilm(event.getFilm()));
+
+        eventBus.subscribe(LikeAdded.class, event -> coOccurrenceIndex.addLike(event.getFilmId(), event.getUserId()));
+        eventBus.subscribe(LikeAdded.class, event -> leaderboards.addLike(event.getFilmId()));
+        eventBus.<DomainEvent>subscribeAsync("trending", List.of(LikeAdded.class, LikeRemoved.class),
+                trendingBatchSize, trendingCounters::apply);
+
+        eventBus.subscribe(LikeRemoved.class, event -> coOccurrenceIndex.unlike(event.getFilmId(), event.getUserId()));
+        eventBus.subscribe(LikeRemoved.class, event -> leaderboards.unlike(event.getFilmId()));
+
+        eventBus.subscribe(FriendAdded.class, event -> friendsGraphIndex.addFriend(event.getUserId(),
+                event.getFriendId()));
+
+        eventBus.subscribe(FriendRemoved.class, event -> friendsGraphIndex.removeFriend(event.getUserId(),
+                event.getFriendId()));
+    }
+}
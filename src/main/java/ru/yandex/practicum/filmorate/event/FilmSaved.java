@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.Film;
+
+@Data
+public class FilmSaved implements DomainEvent {
+    private final Film film;
+    private final boolean created; // false - фильм обновлен
+}
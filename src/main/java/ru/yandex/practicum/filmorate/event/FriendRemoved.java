@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Data;
+
+@Data
+public class FriendRemoved implements DomainEvent {
+    private final long userId;
+    private final long friendId;
+}
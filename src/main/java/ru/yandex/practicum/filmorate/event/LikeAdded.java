@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class LikeAdded implements DomainEvent {
+    private final long filmId;
+    private final long userId;
+    private final Instant at;
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class LikeRemoved implements DomainEvent {
+    private final long filmId;
+    private final long userId;
+    private final Instant at;
+    private final Instant likedAt; // когда был поставлен снятый лайк, null - неизвестно
+}
@@ -7,12 +7,15 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import javax.validation.ConstraintViolationException;
+
 @RestControllerAdvice
 @Slf4j
 public class ErrorHandler {
 
     @ResponseStatus(HttpStatus.BAD_REQUEST)
-    @ExceptionHandler({ValidationException.class, RedoCreationException.class, MethodArgumentNotValidException.class})
+    @ExceptionHandler({ValidationException.class, RedoCreationException.class, MethodArgumentNotValidException.class,
+            ConstraintViolationException.class})
     public ErrorResponse handleValidationException(Exception e) {
         log.warn(e.getClass().getSimpleName(), e);
         return new ErrorResponse(400, "Bad Request", e.getMessage());
@@ -25,6 +28,20 @@ public class ErrorHandler {
         return new ErrorResponse(404, "Not Found", e.getMessage());
     }
 
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    @ExceptionHandler
+    public ErrorResponse handleVersionConflictException(VersionConflictException e) {
+        log.warn("VersionConflictException", e);
+        return new ErrorResponse(412, "Precondition Failed", e.getMessage());
+    }
+
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler
+    public ErrorResponse handleServiceUnavailableException(ServiceUnavailableException e) {
+        log.warn("ServiceUnavailableException", e);
+        return new ErrorResponse(503, "Service Unavailable", e.getMessage());
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ErrorResponse handleThrowable(final Throwable e) {
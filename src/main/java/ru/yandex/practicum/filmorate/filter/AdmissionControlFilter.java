@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.exception.ErrorResponse;
+import ru.yandex.practicum.filmorate.util.TokenBucket;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Контроль допуска перед контроллерами: у каждого клиента свой токен-бакет, а у каждого класса эндпоинтов
+// (LIGHT/HEAVY) - свой лимит одновременных запросов. Лишние запросы сразу получают 429 и не занимают пул соединений
+@Component
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+    private final ObjectMapper objectMapper;
+    private final AdmissionMetrics metrics;
+    private final boolean enabled;
+    private final double ratePerSecond;
+    private final int burst;
+    private final int maxClients;
+    private final String clientHeader;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Map<EndpointClass, Semaphore> permits = new EnumMap<>(EndpointClass.class);
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    public AdmissionControlFilter(ObjectMapper objectMapper, AdmissionMetrics metrics,
+                                  @Value("${filmorate.admission.enabled:true}") boolean enabled,
+                                  @Value("${filmorate.admission.rate-per-second:50}") double ratePerSecond,
+                                  @Value("${filmorate.admission.burst:100}") int burst,
+                                  @Value("${filmorate.admission.max-clients:100000}") int maxClients,
+                                  @Value("${filmorate.admission.client-header:}") String clientHeader,
+                                  @Value("${filmorate.admission.light-concurrency:64}") int lightConcurrency,
+                                  @Value("${filmorate.admission.heavy-concurrency:8}") int heavyConcurrency) {
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.maxClients = maxClients;
+        this.clientHeader = clientHeader;
+        permits.put(EndpointClass.LIGHT, new Semaphore(lightConcurrency));
+        permits.put(EndpointClass.HEAVY, new Semaphore(heavyConcurrency));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        EndpointClass endpointClass = EndpointClass.of(request);
+        long now = System.nanoTime();
+        long wait = bucket(clientId(request), now).tryAcquire(now);
+        if (wait > 0) {
+            metrics.rateLimited(endpointClass);
+            reject(response, TimeUnit.NANOSECONDS.toSeconds(wait) + 1, "Request rate limit exceeded");
+            return;
+        }
+        Semaphore semaphore = permits.get(endpointClass);
+        if (!semaphore.tryAcquire()) {
+            metrics.concurrencyLimited(endpointClass);
+            reject(response, 1, "Too many concurrent " + endpointClass.name().toLowerCase() + " requests");
+            return;
+        }
+        metrics.admitted(endpointClass);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private String clientId(HttpServletRequest request) {
+        if (!clientHeader.isEmpty()) {
+            String client = request.getHeader(clientHeader);
+            if (client != null && !client.isBlank()) {
+                return client;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private TokenBucket bucket(String clientId, long now) {
+        TokenBucket bucket = buckets.get(clientId);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxClients) {
+            sweep(now);
+        }
+        return buckets.computeIfAbsent(clientId, id -> new TokenBucket(ratePerSecond, burst, now));
+    }
+
+    // Полные бакеты ничем не отличаются от новых, поэтому при переполнении таблицы клиентов их можно выбросить
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int before = buckets.size();
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+            log.debug("Swept {} idle rate limit buckets", before - buckets.size());
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private void reject(HttpServletResponse response, long retryAfterSeconds, String message) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorResponse(429, "Too Many Requests", message));
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.filter;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Счетчики пропущенных и отброшенных запросов по классам эндпоинтов
+@Component
+public class AdmissionMetrics {
+    private final Map<EndpointClass, LongAdder> admitted = counters();
+    private final Map<EndpointClass, LongAdder> rateLimited = counters();
+    private final Map<EndpointClass, LongAdder> concurrencyLimited = counters();
+
+    void admitted(EndpointClass endpointClass) {
+        admitted.get(endpointClass).increment();
+    }
+
+    void rateLimited(EndpointClass endpointClass) {
+        rateLimited.get(endpointClass).increment();
+    }
+
+    void concurrencyLimited(EndpointClass endpointClass) {
+        concurrencyLimited.get(endpointClass).increment();
+    }
+
+    public long getAdmitted(EndpointClass endpointClass) {
+        return admitted.get(endpointClass).sum();
+    }
+
+    public long getRateLimited(EndpointClass endpointClass) {
+        return rateLimited.get(endpointClass).sum();
+    }
+
+    public long getConcurrencyLimited(EndpointClass endpointClass) {
+        return concurrencyLimited.get(endpointClass).sum();
+    }
+
+    public Map<String, Map<String, Long>> snapshot() {
+        Map<String, Map<String, Long>> snapshot = new LinkedHashMap<>();
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            Map<String, Long> values = new LinkedHashMap<>();
+            values.put("admitted", getAdmitted(endpointClass));
+            values.put("rateLimited", getRateLimited(endpointClass));
+            values.put("concurrencyLimited", getConcurrencyLimited(endpointClass));
+            snapshot.put(endpointClass.name().toLowerCase(), values);
+        }
+        return snapshot;
+    }
+
+    private static Map<EndpointClass, LongAdder> counters() {
+        Map<EndpointClass, LongAdder> counters = new EnumMap<>(EndpointClass.class);
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            counters.put(endpointClass, new LongAdder());
+        }
+        return counters;
+    }
+}
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.filter;
+
+import javax.servlet.http.HttpServletRequest;
+
+// Класс эндпоинта для ограничения параллельности: дешевые точечные чтения и записи против
+// тяжелых списков, рейтингов, поиска, рекомендаций и пакетных операций
+public enum EndpointClass {
+    LIGHT, HEAVY;
+
+    public static EndpointClass of(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.endsWith(":batch")) {
+            return HEAVY;
+        }
+        if (!"GET".equals(request.getMethod())) {
+            return LIGHT;
+        }
+        if (path.equals("/films") && request.getParameter("ids") == null || path.equals("/users")
+                || path.equals("/films/popular") || path.equals("/films/trending") || path.equals("/films/search")
+                || path.endsWith("/friends/suggestions") || path.contains("/friends/common")
+                || path.endsWith("/recommendations") || path.contains("/path/")) {
+            return HEAVY;
+        }
+        return LIGHT;
+    }
+}
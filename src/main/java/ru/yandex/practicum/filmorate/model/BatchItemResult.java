@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BatchItemResult {
+    private int index;
+    private BatchStatus status;
+    private String message;
+}
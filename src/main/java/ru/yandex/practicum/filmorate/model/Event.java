@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class Event {
+    private long eventId;
+    private Long userId;
+    private EventType eventType;
+    private Operation operation;
+    private long entityId;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,5 @@
+package ru.yandex.practicum.filmorate.model;
+
+public enum EventType {
+    LIKE, FRIEND, FILM
+}
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.model;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 import javax.validation.constraints.*;
 import java.time.LocalDate;
@@ -23,5 +24,9 @@ public class Film {
     @NotNull(message = "Mpa must not be null")
     private Mpa mpa;
     private final List<Long> likes;
+    @EqualsAndHashCode.Exclude
+    private Long likesCount;
     private final List<Genre> genres;
+    @EqualsAndHashCode.Exclude
+    private Long version;
 }
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Поля фильма для параметра fields=: хранилище не читает колонки и не выполняет подзапросы для незапрошенных полей
+public enum FilmField {
+    ID("id"),
+    NAME("name"),
+    DESCRIPTION("description"),
+    RELEASE_DATE("releaseDate"),
+    DURATION("duration"),
+    RATE("rate"),
+    MPA("mpa"),
+    LIKES("likes"),
+    LIKES_COUNT("likesCount"),
+    GENRES("genres"),
+    VERSION("version");
+
+    private final String jsonName;
+
+    FilmField(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    // Без параметра fields возвращаются все поля, id возвращается всегда
+    public static Set<FilmField> parse(Collection<String> names) {
+        if (names == null) {
+            return EnumSet.allOf(FilmField.class);
+        }
+        Set<FilmField> fields = EnumSet.of(ID);
+        for (String name : names) {
+            fields.add(fromJsonName(name.trim()));
+        }
+        return fields;
+    }
+
+    // Поля ответа на изменение фильма: число лайков вместо их списка
+    public static Set<FilmField> withoutLikes() {
+        return EnumSet.complementOf(EnumSet.of(LIKES));
+    }
+
+    public static Set<String> jsonNames(Set<FilmField> fields) {
+        return fields.stream()
+                .map(FilmField::getJsonName)
+                .collect(Collectors.toSet());
+    }
+
+    private static FilmField fromJsonName(String name) {
+        for (FilmField field : values()) {
+            if (field.jsonName.equals(name)) {
+                return field;
+            }
+        }
+        throw new ValidationException(String.format("Unknown film field %s", name));
+    }
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class LikeBatchItem {
+    private long filmId;
+    private long userId;
+    private Operation operation;
+}
@@ -3,9 +3,12 @@ package ru.yandex.practicum.filmorate.model;
 import lombok.Builder;
 import lombok.Data;
 
+import java.time.LocalDateTime;
+
 @Data
 @Builder
 public class Likes {
     private long userId;
     private long filmId;
+    private LocalDateTime createdAt;
 }
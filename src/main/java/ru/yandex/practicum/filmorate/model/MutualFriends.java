@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class MutualFriends {
+    private long userId;
+    private int count;
+    private List<Long> friendIds;
+}
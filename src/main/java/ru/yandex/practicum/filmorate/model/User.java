@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.model;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
@@ -23,4 +24,6 @@ public class User {
     @PastOrPresent(message = "Date of birth must not be in the future")
     private LocalDate birthday;
     private final List<Long> friends;
+    @EqualsAndHashCode.Exclude
+    private Long version;
 }
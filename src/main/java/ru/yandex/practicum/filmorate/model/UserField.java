@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Поля пользователя для параметра fields=: хранилище не читает колонки и не выполняет подзапросы для незапрошенных полей
+public enum UserField {
+    ID("id"),
+    EMAIL("email"),
+    LOGIN("login"),
+    NAME("name"),
+    BIRTHDAY("birthday"),
+    FRIENDS("friends"),
+    VERSION("version");
+
+    private final String jsonName;
+
+    UserField(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    // Без параметра fields возвращаются все поля, id возвращается всегда
+    public static Set<UserField> parse(Collection<String> names) {
+        return parse(names, EnumSet.allOf(UserField.class));
+    }
+
+    public static Set<UserField> parse(Collection<String> names, Set<UserField> defaults) {
+        if (names == null) {
+            return EnumSet.copyOf(defaults);
+        }
+        Set<UserField> fields = EnumSet.of(ID);
+        for (String name : names) {
+            fields.add(fromJsonName(name.trim()));
+        }
+        return fields;
+    }
+
+    public static Set<String> jsonNames(Set<UserField> fields) {
+        return fields.stream()
+                .map(UserField::getJsonName)
+                .collect(Collectors.toSet());
+    }
+
+    private static UserField fromJsonName(String name) {
+        for (UserField field : values()) {
+            if (field.jsonName.equals(name)) {
+                return field;
+            }
+        }
+        throw new ValidationException(String.format("Unknown user field %s", name));
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.log.Logger;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.storage.dal.UserStorage;
+import ru.yandex.practicum.filmorate.storage.index.FeedTailBuffer;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumSet;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class FeedService {
+    private final UserStorage userStorage;
+    private final FeedTailBuffer feedTailBuffer;
+
+    public void addEvent(Long userId, EventType eventType, Operation operation, long entityId) {
+        feedTailBuffer.append(Event.builder()
+                .userId(userId)
+                .eventType(eventType)
+                .operation(operation)
+                .entityId(entityId)
+                .createdAt(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS))
+                .build());
+    }
+
+    public List<Event> getFeed(long userId, long after, int limit) {
+        userStorage.getUserById(userId, EnumSet.of(UserField.ID));
+        List<Event> feed = feedTailBuffer.getFeed(userId, after, limit);
+        Logger.logSave(HttpMethod.GET, "/users/" + userId + "/feed?after=" + after + "&limit=" + limit,
+                feed.toString());
+        return feed;
+    }
+}
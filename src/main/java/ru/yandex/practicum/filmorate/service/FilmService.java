@@ -3,84 +3,258 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
+import ru.yandex.practicum.filmorate.event.FilmSaved;
+import ru.yandex.practicum.filmorate.event.LikeAdded;
+import ru.yandex.practicum.filmorate.event.LikeRemoved;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.log.Logger;
-import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.*;
 import ru.yandex.practicum.filmorate.storage.dal.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.dal.LikesStorage;
+import ru.yandex.practicum.filmorate.storage.index.FilmCoOccurrenceIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsSnapshot;
+import ru.yandex.practicum.filmorate.storage.index.PopularityLeaderboards;
+import ru.yandex.practicum.filmorate.storage.index.TrendingCounters;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class FilmService {
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int MAX_IDS = 100;
+    private static final int FEED_FAN_OUT_PAGE = 1000;
+
     private final FilmStorage filmStorage;
     private final UserService userService;
     private final LikesStorage likesStorage;
+    private final FilmCoOccurrenceIndex coOccurrenceIndex;
+    private final FilmSearchIndex searchIndex;
+    private final PopularityLeaderboards leaderboards;
+    private final PopularFilmsSnapshot popularSnapshot;
+    private final TrendingCounters trendingCounters;
+    private final FeedService feedService;
+    private final DomainEventBus eventBus;
+    private final SingleFlight singleFlight;
 
-    public Collection<Film> getFilms() {
-        Collection<Film> filmsInStorage = filmStorage.getFilms();
+    public Collection<Film> getFilms(Set<FilmField> fields) {
+        Collection<Film> filmsInStorage = filmStorage.getFilms(fields);
         Logger.logSave(HttpMethod.GET, "/films", filmsInStorage.toString());
         return filmsInStorage;
     }
 
     public Film addFilm(Film film) {
         Film filmInStorage = filmStorage.addFilm(checkValidation(film));
+        eventBus.publish(new FilmSaved(filmInStorage, true));
         Logger.logSave(HttpMethod.POST, "/films", filmInStorage.toString());
         return filmInStorage;
     }
 
     public Film updateFilm(Film film) {
         Film filmInStorage = filmStorage.updateFilm(checkValidation(film));
+        eventBus.publish(new FilmSaved(filmInStorage, false));
+        onFilmUpdated(filmInStorage.getId());
         Logger.logSave(HttpMethod.PUT, "/films", filmInStorage.toString());
         return filmInStorage;
     }
 
-    public Film getFilmById(long id) {
-        Film filmInStorage = filmStorage.getFilmById(id);
+    public Film getFilmById(long id, Set<FilmField> fields) {
+        Film filmInStorage = singleFlight.execute(Arrays.asList("film", id, fields),
+                () -> filmStorage.getFilmById(id, fields));
         Logger.logSave(HttpMethod.GET, "/films/" + id, filmInStorage.toString());
         return filmInStorage;
     }
 
+    public List<Film> getFilmsByIds(List<Long> ids, Set<FilmField> fields) {
+        if (ids.isEmpty() || ids.size() > MAX_IDS) {
+            throw new ValidationException(String.format("From 1 to %s film ids must be requested", MAX_IDS));
+        }
+        List<Film> filmsInStorage = filmStorage.getFilmsByIds(ids, fields);
+        Logger.logSave(HttpMethod.GET, "/films?ids=" + ids, filmsInStorage.toString());
+        return filmsInStorage;
+    }
+
     public void addLike(long id, long userId) {
         boolean addition;
-        filmStorage.getFilmById(id);
-        userService.getUserById(userId);
+        filmStorage.getFilmById(id, EnumSet.of(FilmField.ID));
+        userService.getUserById(userId, EnumSet.of(UserField.ID));
         addition = likesStorage.addLike(id, userId);
+        onLikeAdded(id, userId);
         Logger.logSave(HttpMethod.PUT, "/films/" + id + "/like/" + userId, ((Boolean) addition).toString());
     }
 
     public void unlike(long id, long userId) {
         boolean removal;
-        filmStorage.getFilmById(id);
-        userService.getUserById(userId);
+        filmStorage.getFilmById(id, EnumSet.of(FilmField.ID));
+        userService.getUserById(userId, EnumSet.of(UserField.ID));
+        Map<List<Long>, Instant> likedAt = getLikedAt(List.of(LikeBatchItem.builder()
+                .filmId(id)
+                .userId(userId)
+                .operation(Operation.REMOVE)
+                .build()));
         removal = likesStorage.unlike(id, userId);
         if (!removal) {
             throw new ObjectNotFoundException(String.format("User with id %s did not like the movie with id %s",
                     userId, id));
         }
+        onLikeRemoved(id, userId, likedAt.get(List.of(id, userId)));
         Logger.logSave(HttpMethod.DELETE, "/films/" + id + "/like/" + userId, ((Boolean) removal).toString());
     }
 
-    public List<Long> getListOfLikes(long id) {
-        filmStorage.getFilmById(id);
-        List<Long> likeList = likesStorage.getListOfLikes(id);
-        Logger.logSave(HttpMethod.GET, "/films/" + id + "/likes", likeList.toString());
+    // Существование всех фильмов и пользователей проверяется двумя запросами на весь пакет,
+    // а сами лайки применяются одной транзакцией
+    public List<BatchItemResult> applyLikes(List<LikeBatchItem> items) {
+        if (items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException(String.format("Batch must contain from 1 to %s items", MAX_BATCH_SIZE));
+        }
+        Set<Long> existingFilms = filmStorage.getExistingFilmIds(items.stream()
+                .map(LikeBatchItem::getFilmId)
+                .collect(Collectors.toSet()));
+        Set<Long> existingUsers = userService.getExistingUserIds(items.stream()
+                .map(LikeBatchItem::getUserId)
+                .collect(Collectors.toSet()));
+        List<BatchItemResult> results = new ArrayList<>(items.size());
+        List<LikeBatchItem> validItems = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            LikeBatchItem item = items.get(i);
+            if (item.getOperation() != Operation.ADD && item.getOperation() != Operation.REMOVE) {
+                results.add(batchItemResult(i, BatchStatus.INVALID,
+                        String.format("Operation %s is not supported, expected ADD or REMOVE", item.getOperation())));
+            } else if (!existingFilms.contains(item.getFilmId())) {
+                results.add(batchItemResult(i, BatchStatus.NOT_FOUND,
+                        String.format("Film with id %s not found", item.getFilmId())));
+            } else if (!existingUsers.contains(item.getUserId())) {
+                results.add(batchItemResult(i, BatchStatus.NOT_FOUND,
+                        String.format("User with id %s not found", item.getUserId())));
+            } else {
+                results.add(null);
+                validItems.add(item);
+                validIndexes.add(i);
+            }
+        }
+        // Время постановки снимаемых лайков читается до удаления; лайк, поставленный в этом же пакете,
+        // снимается со временем своей постановки
+        Map<List<Long>, Instant> likedAt = getLikedAt(validItems.stream()
+                .filter(item -> item.getOperation() == Operation.REMOVE)
+                .collect(Collectors.toList()));
+        boolean[] applied = validItems.isEmpty() ? new boolean[0] : likesStorage.applyLikes(validItems);
+        for (int j = 0; j < validItems.size(); j++) {
+            LikeBatchItem item = validItems.get(j);
+            int index = validIndexes.get(j);
+            if (!applied[j]) {
+                results.set(index, batchItemResult(index, BatchStatus.UNCHANGED, null));
+                continue;
+            }
+            List<Long> key = List.of(item.getFilmId(), item.getUserId());
+            if (item.getOperation() == Operation.ADD) {
+                likedAt.put(key, onLikeAdded(item.getFilmId(), item.getUserId()));
+            } else {
+                onLikeRemoved(item.getFilmId(), item.getUserId(), likedAt.remove(key));
+            }
+            results.set(index, batchItemResult(index, BatchStatus.APPLIED, null));
+        }
+        Logger.logSave(HttpMethod.POST, "/films/likes:batch", results.toString());
+        return results;
+    }
+
+    public List<Long> getListOfLikes(long id, long after, int limit) {
+        filmStorage.getFilmById(id, EnumSet.of(FilmField.ID));
+        List<Long> likeList = likesStorage.getListOfLikes(id, after, limit);
+        Logger.logSave(HttpMethod.GET, "/films/" + id + "/likes?after=" + after + "&limit=" + limit,
+                likeList.toString());
         return likeList;
     }
 
-    public List<Film> getTheBestFilms(int count) {
-        List<Film> bestFilms = likesStorage.getTheBestFilms(count).stream()
-                .map(filmStorage::getFilmById)
-                .collect(Collectors.toList());
-        Logger.logSave(HttpMethod.GET, "/films/popular?count=" + count, bestFilms.toString());
+    public List<Film> getTheBestFilms(int count, Integer genreId, Integer year) {
+        List<Film> bestFilms = genreId == null && year == null
+                ? popularSnapshot.getTheBestFilms(count)
+                : singleFlight.execute(Arrays.asList("popular", count, genreId, year),
+                        () -> filmStorage.getFilmsByIds(leaderboards.getTheBestFilms(count, genreId, year)));
+        Logger.logSave(HttpMethod.GET, "/films/popular?count=" + count + "&genreId=" + genreId + "&year=" + year,
+                bestFilms.toString());
         return bestFilms;
     }
 
+    public List<Film> getTrendingFilms(String window, int count) {
+        List<Film> trendingFilms = filmStorage.getFilmsByIds(
+                trendingCounters.getTrending(TrendingCounters.Window.fromString(window), count));
+        Logger.logSave(HttpMethod.GET, "/films/trending?window=" + window + "&count=" + count,
+                trendingFilms.toString());
+        return trendingFilms;
+    }
+
+    public List<Film> searchFilms(String query, int count) {
+        List<Film> foundFilms = filmStorage.getFilmsByIds(
+                searchIndex.search(query, count, coOccurrenceIndex::getLikesCount));
+        Logger.logSave(HttpMethod.GET, "/films/search?q=" + query + "&count=" + count, foundFilms.toString());
+        return foundFilms;
+    }
+
+    public List<Film> getRecommendations(long userId, int count) {
+        userService.getUserById(userId, EnumSet.of(UserField.ID));
+        List<Film> recommendations = filmStorage.getFilmsByIds(coOccurrenceIndex.recommend(userId, count));
+        Logger.logSave(HttpMethod.GET, "/users/" + userId + "/recommendations?count=" + count,
+                recommendations.toString());
+        return recommendations;
+    }
+
+    // Обновление фильма попадает в ленты лайкнувших его пользователей; лайки читаются страницами по курсору
+    private void onFilmUpdated(long id) {
+        long after = 0;
+        List<Long> likes;
+        do {
+            likes = likesStorage.getListOfLikes(id, after, FEED_FAN_OUT_PAGE);
+            for (long userId : likes) {
+                feedService.addEvent(userId, EventType.FILM, Operation.UPDATE, id);
+                after = userId;
+            }
+        } while (likes.size() == FEED_FAN_OUT_PAGE);
+    }
+
+    private Instant onLikeAdded(long id, long userId) {
+        Instant now = Instant.now();
+        eventBus.publish(new LikeAdded(id, userId, now));
+        feedService.addEvent(userId, EventType.LIKE, Operation.ADD, id);
+        return now;
+    }
+
+    private void onLikeRemoved(long id, long userId, Instant likedAt) {
+        eventBus.publish(new LikeRemoved(id, userId, Instant.now(), likedAt));
+        feedService.addEvent(userId, EventType.LIKE, Operation.REMOVE, id);
+    }
+
+    private Map<List<Long>, Instant> getLikedAt(List<LikeBatchItem> removals) {
+        Map<List<Long>, Instant> likedAt = new HashMap<>();
+        if (!removals.isEmpty()) {
+            likesStorage.getLikes(removals).forEach(like -> likedAt.put(List.of(like.getFilmId(), like.getUserId()),
+                    like.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant()));
+        }
+        return likedAt;
+    }
+
+    private BatchItemResult batchItemResult(int index, BatchStatus status, String message) {
+        return BatchItemResult.builder()
+                .index(index)
+                .status(status)
+                .message(message)
+                .build();
+    }
+
     private Film checkValidation(Film film) {
         if (film.getReleaseDate() != null && film.getReleaseDate()
                 .isBefore(LocalDate.of(1895, 12, 28))) {
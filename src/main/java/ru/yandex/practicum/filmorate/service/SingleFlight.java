@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Склейка одинаковых одновременных чтений: первый запрос с ключом выполняет загрузку в своем потоке,
+// остальные ждут его результат (или его исключение) не дольше timeout и затем получают 503
+@Component
+@Slf4j
+public class SingleFlight {
+    private final long timeoutMillis;
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public SingleFlight(@Value("${filmorate.single-flight.timeout-ms:2000}") long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> V execute(Object key, Supplier<V> loader) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            return (V) await(key, existing);
+        }
+        try {
+            V value = loader.get();
+            inFlight.remove(key, call);
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, call);
+            call.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Object await(Object key, CompletableFuture<Object> call) {
+        try {
+            return call.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        } catch (TimeoutException e) {
+            log.warn("Timed out after {} ms waiting for in-flight {}", timeoutMillis, key);
+            throw new ServiceUnavailableException(String.format("Request %s timed out, try again later", key));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException(String.format("Request %s was interrupted", key));
+        }
+    }
+}
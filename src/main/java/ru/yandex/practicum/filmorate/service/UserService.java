@@ -3,25 +3,37 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
+import ru.yandex.practicum.filmorate.event.FriendAdded;
+import ru.yandex.practicum.filmorate.event.FriendRemoved;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.log.Logger;
-import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.*;
 import ru.yandex.practicum.filmorate.storage.dal.FriendsStorage;
 import ru.yandex.practicum.filmorate.storage.dal.UserStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendsGraphIndex;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final UserStorage userStorage;
     private final FriendsStorage friendsStorage;
+    private final FriendsGraphIndex friendsGraphIndex;
+    private final FeedService feedService;
+    private final DomainEventBus eventBus;
 
-    public Collection<User> getUsers() {
-        Collection<User> usersInStorage = userStorage.getUsers();
+    public Collection<User> getUsers(Set<UserField> fields) {
+        Collection<User> usersInStorage = userStorage.getUsers(fields);
         Logger.logSave(HttpMethod.GET, "/users", usersInStorage.toString());
         return usersInStorage;
     }
@@ -39,50 +51,156 @@ public class UserService {
     }
 
     public User getUserById(long id) {
-        User userInStorage = userStorage.getUserById(id);
+        return getUserById(id, EnumSet.allOf(UserField.class));
+    }
+
+    public User getUserById(long id, Set<UserField> fields) {
+        User userInStorage = userStorage.getUserById(id, fields);
         Logger.logSave(HttpMethod.GET, "/users/" + id, userInStorage.toString());
         return userInStorage;
     }
 
     public void addAsFriend(long id, long friendId) {
         boolean addition;
-        userStorage.getUserById(id);
-        userStorage.getUserById(friendId);
+        userStorage.getUserById(id, EnumSet.of(UserField.ID));
+        userStorage.getUserById(friendId, EnumSet.of(UserField.ID));
         addition = friendsStorage.addAsFriend(id, friendId);
+        onFriendAdded(id, friendId);
         Logger.logSave(HttpMethod.PUT, "/users/" + id + "/friends/" + friendId, ((Boolean) addition).toString());
     }
 
     public void removeFromFriends(long id, long friendId) {
         boolean removal;
-        userStorage.getUserById(id);
-        userStorage.getUserById(friendId);
+        userStorage.getUserById(id, EnumSet.of(UserField.ID));
+        userStorage.getUserById(friendId, EnumSet.of(UserField.ID));
         removal = friendsStorage.removeFromFriends(id, friendId);
         if (!removal) {
             throw new ObjectNotFoundException(String.format("User with id %s is not friends with user with id %s",
                     id, friendId));
         }
+        onFriendRemoved(id, friendId);
         Logger.logSave(HttpMethod.DELETE, "/users/" + id + "/friends/" + friendId, ((Boolean) removal).toString());
     }
 
-    public List<User> getListOfFriends(long id) {
-        userStorage.getUserById(id);
-        List<User> friendList = friendsStorage.getListOfFriends(id).stream()
-                .map(userStorage::getUserById)
-                .collect(Collectors.toList());
-        Logger.logSave(HttpMethod.GET, "/users/" + id + "/friends", friendList.toString());
+    // Существование всех друзей проверяется одним запросом на весь пакет, изменения применяются одной транзакцией
+    public List<BatchItemResult> applyFriends(long id, List<FriendBatchItem> items) {
+        if (items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException(String.format("Batch must contain from 1 to %s items", MAX_BATCH_SIZE));
+        }
+        userStorage.getUserById(id, EnumSet.of(UserField.ID));
+        Set<Long> existingUsers = userStorage.getExistingUserIds(items.stream()
+                .map(FriendBatchItem::getFriendId)
+                .collect(Collectors.toSet()));
+        List<BatchItemResult> results = new ArrayList<>(items.size());
+        List<FriendBatchItem> validItems = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            FriendBatchItem item = items.get(i);
+            if (item.getOperation() != Operation.ADD && item.getOperation() != Operation.REMOVE) {
+                results.add(batchItemResult(i, BatchStatus.INVALID,
+                        String.format("Operation %s is not supported, expected ADD or REMOVE", item.getOperation())));
+            } else if (!existingUsers.contains(item.getFriendId())) {
+                results.add(batchItemResult(i, BatchStatus.NOT_FOUND,
+                        String.format("User with id %s not found", item.getFriendId())));
+            } else {
+                results.add(null);
+                validItems.add(item);
+                validIndexes.add(i);
+            }
+        }
+        boolean[] applied = validItems.isEmpty() ? new boolean[0] : friendsStorage.applyFriends(id, validItems);
+        for (int j = 0; j < validItems.size(); j++) {
+            FriendBatchItem item = validItems.get(j);
+            int index = validIndexes.get(j);
+            if (!applied[j]) {
+                results.set(index, batchItemResult(index, BatchStatus.UNCHANGED, null));
+                continue;
+            }
+            if (item.getOperation() == Operation.ADD) {
+                onFriendAdded(id, item.getFriendId());
+            } else {
+                onFriendRemoved(id, item.getFriendId());
+            }
+            results.set(index, batchItemResult(index, BatchStatus.APPLIED, null));
+        }
+        Logger.logSave(HttpMethod.POST, "/users/" + id + "/friends:batch", results.toString());
+        return results;
+    }
+
+    public Set<Long> getExistingUserIds(Collection<Long> ids) {
+        return userStorage.getExistingUserIds(ids);
+    }
+
+    public List<User> getListOfFriends(long id, long after, int limit, Set<UserField> fields) {
+        userStorage.getUserById(id, EnumSet.of(UserField.ID));
+        List<User> friendList = userStorage.getUsersByIds(friendsStorage.getListOfFriends(id, after, limit), fields);
+        Logger.logSave(HttpMethod.GET, "/users/" + id + "/friends?after=" + after + "&limit=" + limit,
+                friendList.toString());
         return friendList;
     }
 
-    public List<User> getAListOfMutualFriends(long id, long otherId) {
-        userStorage.getUserById(id);
-        userStorage.getUserById(otherId);
-        List<User> mutualFriends = friendsStorage.getAListOfMutualFriends(id, otherId).stream()
-                .map(userStorage::getUserById)
-                .collect(Collectors.toList());
-        Logger.logSave(HttpMethod.GET, "/users/" + id + "/friends/common/" + otherId, mutualFriends.toString());
+    public List<User> getAListOfMutualFriends(long id, long otherId, long after, int limit, Set<UserField> fields) {
+        userStorage.getUserById(id, EnumSet.of(UserField.ID));
+        userStorage.getUserById(otherId, EnumSet.of(UserField.ID));
+        List<User> mutualFriends = userStorage.getUsersByIds(
+                friendsStorage.getAListOfMutualFriends(id, otherId, after, limit), fields);
+        Logger.logSave(HttpMethod.GET, "/users/" + id + "/friends/common/" + otherId + "?after=" + after +
+                "&limit=" + limit, mutualFriends.toString());
         return mutualFriends;
     }
 
+    // Несуществующие кандидаты пропускаются, остальные ранжируются по числу общих друзей
+    public List<MutualFriends> getMutualFriendCounts(long id, List<Long> otherIds, boolean withIds) {
+        if (otherIds.isEmpty() || otherIds.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException(String.format("From 1 to %s user ids must be requested", MAX_BATCH_SIZE));
+        }
+        userStorage.getUserById(id, EnumSet.of(UserField.ID));
+        List<MutualFriends> mutualFriends = friendsGraphIndex.countMutualFriends(id,
+                userStorage.getExistingUserIds(otherIds), withIds);
+        Logger.logSave(HttpMethod.GET, "/users/" + id + "/friends/common?otherIds=" + otherIds + "&withIds=" +
+                withIds, mutualFriends.toString());
+        return mutualFriends;
+    }
+
+    public List<User> getPath(long id, long otherId, Set<UserField> fields) {
+        userStorage.getUserById(id, EnumSet.of(UserField.ID));
+        userStorage.getUserById(otherId, EnumSet.of(UserField.ID));
+        List<Long> pathIds = friendsGraphIndex.findPath(id, otherId);
+        if (pathIds.isEmpty()) {
+            throw new ObjectNotFoundException(String.format("User with id %s is not connected to user with id %s",
+                    id, otherId));
+        }
+        List<User> path = userStorage.getUsersByIds(pathIds, fields);
+        Logger.logSave(HttpMethod.GET, "/users/" + id + "/path/" + otherId, path.toString());
+        return path;
+    }
+
+    public List<User> getFriendSuggestions(long id, int count, Set<UserField> fields) {
+        userStorage.getUserById(id, EnumSet.of(UserField.ID));
+        List<User> suggestions = userStorage.getUsersByIds(friendsGraphIndex.suggest(id, count), fields);
+        Logger.logSave(HttpMethod.GET, "/users/" + id + "/friends/suggestions?count=" + count,
+                suggestions.toString());
+        return suggestions;
+    }
+
+    private void onFriendAdded(long id, long friendId) {
+        eventBus.publish(new FriendAdded(id, friendId));
+        feedService.addEvent(id, EventType.FRIEND, Operation.ADD, friendId);
+    }
+
+    private void onFriendRemoved(long id, long friendId) {
+        eventBus.publish(new FriendRemoved(id, friendId));
+        feedService.addEvent(id, EventType.FRIEND, Operation.REMOVE, friendId);
+    }
+
+    private BatchItemResult batchItemResult(int index, BatchStatus status, String message) {
+        return BatchItemResult.builder()
+                .index(index)
+                .status(status)
+                .message(message)
+                .build();
+    }
+
     private User checkValidation(User user) {
         if (user.getLogin().contains(" ")) {
             throw new ValidationException("Login must not contain spaces");
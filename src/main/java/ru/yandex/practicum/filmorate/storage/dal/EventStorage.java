@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.storage.dal;
+
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.util.List;
+
+public interface EventStorage {
+    Event addEvent(Event event);
+    List<Event> getFeed(long userId, long afterEventId, int limit);
+    List<Event> getEvents(long afterEventId, int limit);
+    long getLastEventId();
+}
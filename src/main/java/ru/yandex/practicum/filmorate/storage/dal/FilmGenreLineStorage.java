@@ -7,6 +7,7 @@ import java.util.List;
 public interface FilmGenreLineStorage {
     void addGenres(List<Genre> genres, long filmId);
     void deleteGenres(long filmId);
+    void deleteGenres(long filmId, List<Integer> genreIds);
     List<Integer> getListOfGenres(long id);
 
 }
@@ -1,12 +1,20 @@
 package ru.yandex.practicum.filmorate.storage.dal;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 public interface FilmStorage {
     Collection<Film> getFilms();
+    Collection<Film> getFilms(Set<FilmField> fields);
     Film addFilm(Film film);
     Film updateFilm(Film film);
     Film getFilmById(long filmId);
+    Film getFilmById(long filmId, Set<FilmField> fields);
+    List<Film> getFilmsByIds(List<Long> filmIds);
+    List<Film> getFilmsByIds(List<Long> filmIds, Set<FilmField> fields);
+    Set<Long> getExistingFilmIds(Collection<Long> filmIds);
 }
@@ -1,11 +1,18 @@
 package ru.yandex.practicum.filmorate.storage.dal;
 
+import ru.yandex.practicum.filmorate.model.FriendBatchItem;
+import ru.yandex.practicum.filmorate.model.Friends;
+
 import java.util.List;
 
 public interface FriendsStorage {
     boolean addAsFriend(long userId, long friendId);
     boolean removeFromFriends(long userId, long friendId);
+    boolean[] applyFriends(long userId, List<FriendBatchItem> items);
     List<Long> getListOfFriends(long userId);
+    List<Long> getListOfFriends(long userId, long afterFriendId, int limit);
     List<Long> getAListOfMutualFriends(long userId, long otherId);
+    List<Long> getAListOfMutualFriends(long userId, long otherId, long afterFriendId, int limit);
+    List<Friends> getAllFriends();
 
 }
@@ -1,11 +1,20 @@
 package ru.yandex.practicum.filmorate.storage.dal;
 
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.Likes;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface LikesStorage {
     boolean addLike(long filmId, long userId);
     boolean unlike(long filmId, long userId);
+    boolean[] applyLikes(List<LikeBatchItem> items);
     List<Long> getListOfLikes(long filmId);
+    List<Long> getListOfLikes(long filmId, long afterUserId, int limit);
     List<Long> getTheBestFilms(int count);
+    List<Likes> getAllLikes();
+    List<Likes> getLikesSince(LocalDateTime from);
+    List<Likes> getLikes(List<LikeBatchItem> items); // существующие лайки из пар (фильм, пользователь) в items
 
 }
@@ -1,12 +1,19 @@
 package ru.yandex.practicum.filmorate.storage.dal;
 
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 public interface UserStorage {
     Collection<User> getUsers();
+    Collection<User> getUsers(Set<UserField> fields);
     User addUser(User user);
     User updateUser(User user);
     User getUserById(long userId);
+    User getUserById(long userId, Set<UserField> fields);
+    List<User> getUsersByIds(List<Long> userIds, Set<UserField> fields);
+    Set<Long> getExistingUserIds(Collection<Long> userIds);
 }
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.dal.EventStorage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "jdbc", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class EventDbStorage implements EventStorage {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Event addEvent(Event event) {
+        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
+                .withTableName("events")
+                .usingColumns("user_id", "event_type", "operation", "entity_id", "created_at")
+                .usingGeneratedKeyColumns("event_id");
+        event.setEventId(simpleJdbcInsert.executeAndReturnKey(toMap(event)).longValue());
+        return event;
+    }
+
+    // Поиск по индексу (USER_ID, EVENT_ID) от курсора, без OFFSET
+    @Override
+    public List<Event> getFeed(long userId, long afterEventId, int limit) {
+        String sqlQuery = "select * from EVENTS where USER_ID = ? and EVENT_ID > ? order by EVENT_ID limit ?";
+        return jdbcTemplate.query(sqlQuery, this::mapRowToEvent, userId, afterEventId, limit);
+    }
+
+    // Все события по первичному ключу от курсора, без OFFSET
+    @Override
+    public List<Event> getEvents(long afterEventId, int limit) {
+        String sqlQuery = "select * from EVENTS where EVENT_ID > ? order by EVENT_ID limit ?";
+        return jdbcTemplate.query(sqlQuery, this::mapRowToEvent, afterEventId, limit);
+    }
+
+    @Override
+    public long getLastEventId() {
+        String sqlQuery = "select coalesce(max(EVENT_ID), 0) from EVENTS";
+        return jdbcTemplate.queryForObject(sqlQuery, Long.class);
+    }
+
+    private Event mapRowToEvent(ResultSet resultSet, int rowNum) throws SQLException {
+        long userId = resultSet.getLong("user_id");
+        return Event.builder()
+                .eventId(resultSet.getLong("event_id"))
+                .userId(resultSet.wasNull() ? null : userId)
+                .eventType(EventType.valueOf(resultSet.getString("event_type")))
+                .operation(Operation.valueOf(resultSet.getString("operation")))
+                .entityId(resultSet.getLong("entity_id"))
+                .createdAt(resultSet.getTimestamp("created_at").toLocalDateTime())
+                .build();
+    }
+
+    private Map<String, Object> toMap(Event event) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("user_id", event.getUserId());
+        values.put("event_type", event.getEventType().name());
+        values.put("operation", event.getOperation().name());
+        values.put("entity_id", event.getEntityId());
+        values.put("created_at", event.getCreatedAt());
+        return values;
+    }
+}
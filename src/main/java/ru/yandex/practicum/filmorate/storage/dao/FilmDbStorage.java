@@ -2,14 +2,18 @@ package ru.yandex.practicum.filmorate.storage.dao;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.exception.VersionConflictException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.service.GenreService;
 import ru.yandex.practicum.filmorate.service.MpaService;
 import ru.yandex.practicum.filmorate.storage.dal.FilmGenreLineStorage;
@@ -18,12 +22,11 @@ import ru.yandex.practicum.filmorate.storage.dal.LikesStorage;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Component
-@Primary
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "jdbc", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class FilmDbStorage implements FilmStorage {
@@ -32,17 +35,23 @@ public class FilmDbStorage implements FilmStorage {
     private final MpaService mpaService;
     private final GenreService genreService;
     private final FilmGenreLineStorage filmGenreLineStorage;
+    private final FilmLikesCounters likesCounters;
 
     @Override
     public Collection<Film> getFilms() {
-        String sqlQuery = "select * from FILMS";
-        return jdbcTemplate.query(sqlQuery, this::mapRowToFilm);
+        return getFilms(EnumSet.allOf(FilmField.class));
+    }
+
+    @Override
+    public Collection<Film> getFilms(Set<FilmField> fields) {
+        return queryFilms(null, new Object[0], fields);
     }
 
     @Override
     public Film addFilm(Film film) {
         SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
                 .withTableName("films")
+                .usingColumns("name", "description", "release_date", "duration", "rate", "MPA_id")
                 .usingGeneratedKeyColumns("film_id");
         long filmId = simpleJdbcInsert.executeAndReturnKey(toMap(film)).longValue();
 
@@ -53,31 +62,85 @@ public class FilmDbStorage implements FilmStorage {
         return getFilmById(filmId);
     }
 
+    // Обновление идет одной транзакцией, жанры меняются только на разницу между старым и новым набором,
+    // а ответ собирается из входного фильма и этой разницы без повторного чтения и без списка лайков.
+    // Новая версия, счетчик лайков и название рейтинга возвращаются тем же запросом, что и обновление
     @Override
+    @Transactional
     public Film updateFilm(Film film) {
-        String sqlQuery = "update FILMS set NAME = ?, DESCRIPTION = ?, RELEASE_DATE = ?, DURATION = ?, RATE = ?, " +
-                "MPA_ID = ? where FILM_ID = ?";
-        jdbcTemplate.update(sqlQuery
-                , film.getName()
-                , film.getDescription()
-                , film.getReleaseDate()
-                , film.getDuration()
-                , film.getRate()
-                , film.getMpa().getId()
-                , film.getId());
-
-        Film oldFilm = getFilmById(film.getId());
-
-        //Очистить жанры
-        Collection<Genre> existingGenres = oldFilm.getGenres();
-        if (existingGenres != null && !existingGenres.isEmpty()) {
-            filmGenreLineStorage.deleteGenres(film.getId());
+        String update = "update FILMS set NAME = ?, DESCRIPTION = ?, RELEASE_DATE = ?, DURATION = ?, RATE = ?, " +
+                "MPA_ID = ?, VERSION = VERSION + 1 where FILM_ID = ?";
+        List<Object> args = new ArrayList<>(Arrays.asList(film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getRate(), film.getMpa().getId(), film.getId()));
+        // Условное обновление: запись меняется, только если ее версия совпадает с прочитанной клиентом
+        if (film.getVersion() != null) {
+            update += " and VERSION = ?";
+            args.add(film.getVersion());
         }
-        //Добавить жанры
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            filmGenreLineStorage.addGenres(film.getGenres(), film.getId());
+        String sqlQuery = "select F.VERSION, F.LIKES_COUNT, M.NAME from final table (" + update + ") F " +
+                "join RATING_MPA M on M.MPA_ID = F.MPA_ID";
+        List<Film> updated = jdbcTemplate.query(sqlQuery, (resultSet, rowNum) -> Film.builder()
+                .version(resultSet.getLong("version"))
+                .likesCount(resultSet.getLong("likes_count") + likesCounters.getPending(film.getId()))
+                .mpa(Mpa.builder()
+                        .id(film.getMpa().getId())
+                        .name(resultSet.getString("name"))
+                        .build())
+                .build(), args.toArray());
+        if (updated.isEmpty()) {
+            if (getExistingFilmIds(List.of(film.getId())).isEmpty()) {
+                throw new ObjectNotFoundException(String.format("Film with id %s not found", film.getId()));
+            }
+            throw new VersionConflictException(String.format("Film with id %s was modified, version %s is outdated",
+                    film.getId(), film.getVersion()));
         }
-        return getFilmById(film.getId());
+        Film saved = updated.get(0);
+
+        // Текущие жанры фильма читаются вместе с названиями всех жанров справочника
+        Set<Integer> newGenreIds = new TreeSet<>();
+        if (film.getGenres() != null) {
+            film.getGenres().forEach(genre -> newGenreIds.add(genre.getId()));
+        }
+        Set<Integer> oldGenreIds = new HashSet<>();
+        Map<Integer, String> genreNames = new HashMap<>();
+        String genresQuery = "select G.GENRE_ID, G.NAME, FGL.FILM_ID from GENRES G " +
+                "left join FILM_GENRE_LINE FGL on FGL.GENRE_ID = G.GENRE_ID and FGL.FILM_ID = ?";
+        jdbcTemplate.query(genresQuery, resultSet -> {
+            int genreId = resultSet.getInt("genre_id");
+            genreNames.put(genreId, resultSet.getString("name"));
+            resultSet.getLong("film_id");
+            if (!resultSet.wasNull()) {
+                oldGenreIds.add(genreId);
+            }
+        }, film.getId());
+        List<Integer> removedGenreIds = oldGenreIds.stream()
+                .filter(genreId -> !newGenreIds.contains(genreId))
+                .collect(Collectors.toList());
+        List<Genre> addedGenres = newGenreIds.stream()
+                .filter(genreId -> !oldGenreIds.contains(genreId))
+                .map(genreId -> Genre.builder().id(genreId).build())
+                .collect(Collectors.toList());
+        if (!removedGenreIds.isEmpty()) {
+            filmGenreLineStorage.deleteGenres(film.getId(), removedGenreIds);
+        }
+        if (!addedGenres.isEmpty()) {
+            filmGenreLineStorage.addGenres(addedGenres, film.getId());
+        }
+
+        return Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .rate(film.getRate())
+                .mpa(saved.getMpa())
+                .likesCount(saved.getLikesCount())
+                .genres(newGenreIds.stream()
+                        .map(genreId -> Genre.builder().id(genreId).name(genreNames.get(genreId)).build())
+                        .collect(Collectors.toList()))
+                .version(saved.getVersion())
+                .build();
     }
 
     @Override
@@ -92,17 +155,144 @@ public class FilmDbStorage implements FilmStorage {
         return film;
     }
 
+    @Override
+    public Film getFilmById(long filmId, Set<FilmField> fields) {
+        List<Film> films = queryFilms("FILM_ID = ?", new Object[]{filmId}, fields);
+        if (films.isEmpty()) {
+            throw new ObjectNotFoundException(String.format("Film with id %s not found", filmId));
+        }
+        return films.get(0);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+        return getFilmsByIds(filmIds, EnumSet.allOf(FilmField.class));
+    }
+
+    // Порядок совпадает с порядком id в запросе, отсутствующие фильмы пропускаются
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds, Set<FilmField> fields) {
+        Set<Long> uniqueIds = new LinkedHashSet<>(filmIds);
+        if (uniqueIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Film> films = new HashMap<>();
+        queryFilms("FILM_ID in (" + placeholders(uniqueIds.size()) + ")", uniqueIds.toArray(), fields)
+                .forEach(film -> films.put(film.getId(), film));
+        return filmIds.stream()
+                .filter(films::containsKey)
+                .map(films::get)
+                .collect(Collectors.toList());
+    }
+
+    // Фильмы, их жанры и лайки загружаются не более чем тремя запросами на весь список. Колонки и подзапросы
+    // незапрошенных полей пропускаются; id и версия читаются всегда. Условие ссылается на колонку FILM_ID,
+    // которая есть во всех трех запросах
+    private List<Film> queryFilms(String condition, Object[] args, Set<FilmField> fields) {
+        String where = condition == null ? "" : " where " + condition;
+
+        Map<Long, List<Genre>> genres = new HashMap<>();
+        if (fields.contains(FilmField.GENRES)) {
+            String genresQuery = "select FILM_ID, G.GENRE_ID, G.NAME from FILM_GENRE_LINE FGL " +
+                    "join GENRES G on G.GENRE_ID = FGL.GENRE_ID" + where + " order by FILM_ID, FGL.GENRE_ID";
+            jdbcTemplate.query(genresQuery, resultSet -> {
+                genres.computeIfAbsent(resultSet.getLong("film_id"), id -> new ArrayList<>())
+                        .add(Genre.builder()
+                                .id(resultSet.getInt("genre_id"))
+                                .name(resultSet.getString("name"))
+                                .build());
+            }, args);
+        }
+
+        Map<Long, List<Long>> likes = new HashMap<>();
+        if (fields.contains(FilmField.LIKES)) {
+            String likesQuery = "select FILM_ID, USER_ID from LIKES" + where;
+            jdbcTemplate.query(likesQuery, resultSet -> {
+                likes.computeIfAbsent(resultSet.getLong("film_id"), id -> new ArrayList<>())
+                        .add(resultSet.getLong("user_id"));
+            }, args);
+        }
+
+        List<String> columns = new ArrayList<>(List.of("F.FILM_ID", "F.VERSION"));
+        Map<FilmField, String> fieldColumns = Map.of(
+                FilmField.NAME, "F.NAME",
+                FilmField.DESCRIPTION, "F.DESCRIPTION",
+                FilmField.RELEASE_DATE, "F.RELEASE_DATE",
+                FilmField.DURATION, "F.DURATION",
+                FilmField.RATE, "F.RATE",
+                FilmField.MPA, "F.MPA_ID, M.NAME as MPA_NAME",
+                FilmField.LIKES_COUNT, "F.LIKES_COUNT");
+        fields.stream()
+                .filter(fieldColumns::containsKey)
+                .map(fieldColumns::get)
+                .forEach(columns::add);
+        String filmsQuery = "select " + String.join(", ", columns) + " from FILMS F" +
+                (fields.contains(FilmField.MPA) ? " left join RATING_MPA M on M.MPA_ID = F.MPA_ID" : "") +
+                where + " order by FILM_ID";
+        return jdbcTemplate.query(filmsQuery, (resultSet, rowNum) -> {
+            long filmId = resultSet.getLong("film_id");
+            Film.FilmBuilder film = Film.builder()
+                    .id(filmId)
+                    .version(resultSet.getLong("version"));
+            if (fields.contains(FilmField.NAME)) {
+                film.name(resultSet.getString("name"));
+            }
+            if (fields.contains(FilmField.DESCRIPTION)) {
+                film.description(resultSet.getString("description"));
+            }
+            if (fields.contains(FilmField.RELEASE_DATE)) {
+                film.releaseDate(resultSet.getDate("release_date").toLocalDate());
+            }
+            if (fields.contains(FilmField.DURATION)) {
+                film.duration(resultSet.getInt("duration"));
+            }
+            if (fields.contains(FilmField.RATE)) {
+                film.rate(resultSet.getInt("rate"));
+            }
+            if (fields.contains(FilmField.MPA)) {
+                int mpaId = resultSet.getInt("mpa_id");
+                film.mpa(resultSet.wasNull() ? null : Mpa.builder()
+                        .id(mpaId)
+                        .name(resultSet.getString("mpa_name"))
+                        .build());
+            }
+            if (fields.contains(FilmField.LIKES)) {
+                film.likes(likes.getOrDefault(filmId, new ArrayList<>()));
+            }
+            if (fields.contains(FilmField.LIKES_COUNT)) {
+                film.likesCount(resultSet.getLong("likes_count") + likesCounters.getPending(filmId));
+            }
+            if (fields.contains(FilmField.GENRES)) {
+                film.genres(genres.getOrDefault(filmId, new ArrayList<>()));
+            }
+            return film.build();
+        }, args);
+    }
+
+    @Override
+    public Set<Long> getExistingFilmIds(Collection<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        String sqlQuery = "select FILM_ID from FILMS where FILM_ID in (" + placeholders(filmIds.size()) + ")";
+        return new HashSet<>(jdbcTemplate.queryForList(sqlQuery, Long.class, filmIds.toArray()));
+    }
+
+    // Счетчик FILMS.LIKES_COUNT вместе с еще не сброшенными в БД приращениями
     private Film mapRowToFilm(ResultSet resultSet, int rowNum) throws SQLException {
+        long filmId = resultSet.getLong("film_id");
         return Film.builder()
-                .id(resultSet.getLong("film_id"))
+                .id(filmId)
                 .name(resultSet.getString("name"))
                 .description(resultSet.getString("description"))
                 .releaseDate(resultSet.getDate("release_date").toLocalDate())
                 .duration(resultSet.getInt("duration"))
                 .rate(resultSet.getInt("rate"))
                 .mpa(mpaService.getMpaById(resultSet.getInt("mpa_id")))
-                .likes(likesStorage.getListOfLikes(resultSet.getLong("film_id")))
-                .genres(genreService.getListOfGenres(resultSet.getLong("film_id")))
+                .likes(likesStorage.getListOfLikes(filmId))
+                .likesCount(resultSet.getLong("likes_count") + likesCounters.getPending(filmId))
+                .genres(genreService.getListOfGenres(filmId))
+                .version(resultSet.getLong("version"))
                 .build();
     }
 
@@ -116,4 +306,8 @@ public class FilmDbStorage implements FilmStorage {
         values.put("MPA_id", film.getMpa().getId());
         return values;
     }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
 }
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage.dao;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -15,6 +16,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "jdbc", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class FilmGenreLineDbStorage implements FilmGenreLineStorage {
@@ -47,6 +49,23 @@ public class FilmGenreLineDbStorage implements FilmGenreLineStorage {
         jdbcTemplate.update(sqlQuery, filmId);
     }
 
+    @Override
+    public void deleteGenres(long filmId, List<Integer> genreIds) {
+        String sqlQuery = "delete from FILM_GENRE_LINE where FILM_ID = ? and GENRE_ID = ?";
+        getJdbcTemplate().batchUpdate(sqlQuery, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i)
+                    throws SQLException {
+                ps.setLong(1, filmId);
+                ps.setInt(2, genreIds.get(i));
+            }
+            @Override
+            public int getBatchSize() {
+                return genreIds.size();
+            }
+        });
+    }
+
     @Override
     public List<Integer> getListOfGenres(long id) {
         String sqlQuery = "select GENRE_ID from FILM_GENRE_LINE where FILM_ID = ?";
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Счетчики лайков по фильмам на полосатых сумматорах LongAdder: "вирусный" фильм не упирается в одну
+// строку БД или одну кэш-линию. Накопленные приращения периодически сбрасываются в FILMS.LIKES_COUNT
+@Component
+@ConditionalOnExpression("'${filmorate.storage.mode:jdbc}' != 'memory'")
+@RequiredArgsConstructor
+@Slf4j
+public class FilmLikesCounters {
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public void increment(long filmId) {
+        adder(filmId).increment();
+    }
+
+    public void decrement(long filmId) {
+        adder(filmId).decrement();
+    }
+
+    public void add(long filmId, long delta) {
+        if (delta != 0) {
+            adder(filmId).add(delta);
+        }
+    }
+
+    // Еще не сброшенное в БД приращение
+    public long getPending(long filmId) {
+        LongAdder adder = pending.get(filmId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    // Ненулевые несброшенные приращения по фильмам
+    public Map<Long, Long> getPendingDeltas() {
+        Map<Long, Long> deltas = new HashMap<>();
+        pending.forEach((filmId, adder) -> {
+            long delta = adder.sum();
+            if (delta != 0) {
+                deltas.put(filmId, delta);
+            }
+        });
+        return deltas;
+    }
+
+    // Остановка сбрасывает приращения последнего интервала, чтобы они не потерялись
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${filmorate.likes.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        List<Object[]> deltas = new ArrayList<>();
+        pending.forEach((filmId, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                deltas.add(new Object[]{delta, filmId});
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        String sqlQuery = "update FILMS set LIKES_COUNT = LIKES_COUNT + ? where FILM_ID = ?";
+        try {
+            jdbcTemplate.batchUpdate(sqlQuery, deltas);
+        } catch (DataAccessException e) {
+            deltas.forEach(delta -> adder((Long) delta[1]).add((Long) delta[0]));
+            throw e;
+        }
+        log.debug("Flushed like counters of {} films", deltas.size());
+    }
+
+    private LongAdder adder(long filmId) {
+        LongAdder adder = pending.get(filmId);
+        return adder != null ? adder : pending.computeIfAbsent(filmId, id -> new LongAdder());
+    }
+}
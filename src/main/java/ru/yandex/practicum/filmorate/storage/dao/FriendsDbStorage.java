@@ -2,17 +2,26 @@ package ru.yandex.practicum.filmorate.storage.dao;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.FriendBatchItem;
 import ru.yandex.practicum.filmorate.model.Friends;
+import ru.yandex.practicum.filmorate.model.Operation;
 import ru.yandex.practicum.filmorate.storage.dal.FriendsStorage;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "jdbc", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class FriendsDbStorage implements FriendsStorage {
@@ -35,6 +44,49 @@ public class FriendsDbStorage implements FriendsStorage {
         return jdbcTemplate.update(sqlQuery, userId, friendId) > 0;
     }
 
+    // Подряд идущие операции одного типа уходят одним JDBC-пакетом, весь список применяется в одной транзакции.
+    // Повторное добавление и удаление отсутствующего друга не меняют данных и возвращают false
+    @Override
+    @Transactional
+    public boolean[] applyFriends(long userId, List<FriendBatchItem> items) {
+        boolean[] applied = new boolean[items.size()];
+        int from = 0;
+        while (from < items.size()) {
+            Operation operation = items.get(from).getOperation();
+            int to = from;
+            while (to < items.size() && items.get(to).getOperation() == operation) {
+                to++;
+            }
+            List<FriendBatchItem> run = items.subList(from, to);
+            String sqlQuery = operation == Operation.ADD
+                    ? "insert into FRIENDS (USER_ID, FRIEND_ID) select ?, ? " +
+                    "where not exists (select 1 from FRIENDS where USER_ID = ? and FRIEND_ID = ?)"
+                    : "delete from FRIENDS where USER_ID = ? and FRIEND_ID = ?";
+            int[] counts = jdbcTemplate.batchUpdate(sqlQuery, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    long friendId = run.get(i).getFriendId();
+                    ps.setLong(1, userId);
+                    ps.setLong(2, friendId);
+                    if (operation == Operation.ADD) {
+                        ps.setLong(3, userId);
+                        ps.setLong(4, friendId);
+                    }
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return run.size();
+                }
+            });
+            for (int i = 0; i < counts.length; i++) {
+                applied[from + i] = counts[i] > 0;
+            }
+            from = to;
+        }
+        return applied;
+    }
+
     @Override
     public List<Long> getListOfFriends(long userId) {
         String sqlQuery = "select FRIEND_ID from FRIENDS where USER_ID = ?";
@@ -49,6 +101,35 @@ public class FriendsDbStorage implements FriendsStorage {
         return jdbcTemplate.queryForList(sqlQuery, Long.class, userId, otherId);
     }
 
+    // Поиск по первичному ключу (USER_ID, FRIEND_ID) от курсора, без OFFSET
+    @Override
+    public List<Long> getListOfFriends(long userId, long afterFriendId, int limit) {
+        String sqlQuery = "select FRIEND_ID from FRIENDS where USER_ID = ? and FRIEND_ID > ? order by FRIEND_ID limit ?";
+        return jdbcTemplate.queryForList(sqlQuery, Long.class, userId, afterFriendId, limit);
+    }
+
+    // Друзья первого пользователя перебираются по ключу от курсора, второй проверяется точечным поиском по ключу
+    @Override
+    public List<Long> getAListOfMutualFriends(long userId, long otherId, long afterFriendId, int limit) {
+        String sqlQuery = "select F.FRIEND_ID from FRIENDS F " +
+                "join FRIENDS O on O.USER_ID = ? and O.FRIEND_ID = F.FRIEND_ID " +
+                "where F.USER_ID = ? and F.FRIEND_ID > ? order by F.FRIEND_ID limit ?";
+        return jdbcTemplate.queryForList(sqlQuery, Long.class, otherId, userId, afterFriendId, limit);
+    }
+
+    @Override
+    public List<Friends> getAllFriends() {
+        String sqlQuery = "select USER_ID, FRIEND_ID from FRIENDS";
+        return jdbcTemplate.query(sqlQuery, this::mapRowToFriends);
+    }
+
+    private Friends mapRowToFriends(ResultSet resultSet, int rowNum) throws SQLException {
+        return Friends.builder()
+                .userId(resultSet.getLong("user_id"))
+                .friendId(resultSet.getLong("friend_id"))
+                .build();
+    }
+
     private Map<String, Object> toMap(Friends friends) {
         Map<String, Object> values = new HashMap<>();
         values.put("user_Id", friends.getUserId());
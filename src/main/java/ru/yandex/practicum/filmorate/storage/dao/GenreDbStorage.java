@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage.dao;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
@@ -14,6 +15,7 @@ import java.sql.SQLException;
 import java.util.Collection;
 
 @Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "jdbc", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class GenreDbStorage implements GenreStorage {
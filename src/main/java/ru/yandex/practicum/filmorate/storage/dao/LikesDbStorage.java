@@ -2,21 +2,41 @@ package ru.yandex.practicum.filmorate.storage.dao;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
 import ru.yandex.practicum.filmorate.model.Likes;
+import ru.yandex.practicum.filmorate.model.Operation;
 import ru.yandex.practicum.filmorate.storage.dal.LikesStorage;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "jdbc", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class LikesDbStorage implements LikesStorage {
+    private static final int MAX_KEYS_PER_QUERY = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final FilmLikesCounters likesCounters;
 
     @Override
     public boolean addLike(long filmId, long userId) {
@@ -25,14 +45,84 @@ public class LikesDbStorage implements LikesStorage {
                 .userId(userId)
                 .build();
         SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("likes");
-        return simpleJdbcInsert.execute(toMap(likes)) > 0;
+                .withTableName("likes")
+                .usingColumns("user_id", "film_id");
+        boolean addition = simpleJdbcInsert.execute(toMap(likes)) > 0;
+        if (addition) {
+            likesCounters.increment(filmId);
+        }
+        return addition;
     }
 
     @Override
     public boolean unlike(long filmId, long userId) {
         String sqlQuery = "delete from LIKES where FILM_ID = ? and USER_ID = ?";
-        return jdbcTemplate.update(sqlQuery, filmId, userId) > 0;
+        boolean removal = jdbcTemplate.update(sqlQuery, filmId, userId) > 0;
+        if (removal) {
+            likesCounters.decrement(filmId);
+        }
+        return removal;
+    }
+
+    // Подряд идущие операции одного типа уходят одним JDBC-пакетом, весь список применяется в одной транзакции.
+    // Повторный лайк и снятие несуществующего лайка не меняют данных и возвращают false
+    @Override
+    @Transactional
+    public boolean[] applyLikes(List<LikeBatchItem> items) {
+        boolean[] applied = new boolean[items.size()];
+        int from = 0;
+        while (from < items.size()) {
+            Operation operation = items.get(from).getOperation();
+            int to = from;
+            while (to < items.size() && items.get(to).getOperation() == operation) {
+                to++;
+            }
+            List<LikeBatchItem> run = items.subList(from, to);
+            String sqlQuery = operation == Operation.ADD
+                    ? "insert into LIKES (USER_ID, FILM_ID) select ?, ? " +
+                    "where not exists (select 1 from LIKES where USER_ID = ? and FILM_ID = ?)"
+                    : "delete from LIKES where USER_ID = ? and FILM_ID = ?";
+            int[] counts = jdbcTemplate.batchUpdate(sqlQuery, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    LikeBatchItem item = run.get(i);
+                    ps.setLong(1, item.getUserId());
+                    ps.setLong(2, item.getFilmId());
+                    if (operation == Operation.ADD) {
+                        ps.setLong(3, item.getUserId());
+                        ps.setLong(4, item.getFilmId());
+                    }
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return run.size();
+                }
+            });
+            for (int i = 0; i < counts.length; i++) {
+                applied[from + i] = counts[i] > 0;
+            }
+            from = to;
+        }
+        // Приращения счетчиков применяются только после фиксации: откат пакета не оставляет фантомных лайков
+        Map<Long, Long> deltas = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (applied[i]) {
+                deltas.merge(items.get(i).getFilmId(), items.get(i).getOperation() == Operation.ADD ? 1L : -1L,
+                        Long::sum);
+            }
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deltas.forEach(likesCounters::add);
+                }
+            });
+        } else {
+            deltas.forEach(likesCounters::add);
+        }
+        return applied;
     }
 
     @Override
@@ -41,18 +131,83 @@ public class LikesDbStorage implements LikesStorage {
         return jdbcTemplate.queryForList(sqlQuery, Long.class, filmId);
     }
 
+    // Поиск по индексу (FILM_ID, USER_ID) от курсора, без OFFSET
+    @Override
+    public List<Long> getListOfLikes(long filmId, long afterUserId, int limit) {
+        String sqlQuery = "select USER_ID from LIKES where FILM_ID = ? and USER_ID > ? order by USER_ID limit ?";
+        return jdbcTemplate.queryForList(sqlQuery, Long.class, filmId, afterUserId, limit);
+    }
+
+    // Порядок по LIKES_COUNT с поправкой на еще не сброшенные приращения, без сброса на пути чтения.
+    // Фильм с уменьшившимся счетчиком может уступить место следующему, поэтому из индекса читается
+    // на столько строк больше, а фильмы с приращениями, не попавшие в эти строки, дочитываются по id
     @Override
     public List<Long> getTheBestFilms(int count) {
-        String sqlQuery = "select FILMS.FILM_ID " +
-                "from FILMS " +
-                "left outer join LIKES ON FILMS.FILM_ID = LIKES.FILM_ID " +
-                "group by FILMS.FILM_id " +
-                "order by count(distinct LIKES.USER_ID) desc " +
-                "limit + ?";
-        List<Long> likes = jdbcTemplate.queryForList(sqlQuery, Long.class, count);
+        Map<Long, Long> deltas = likesCounters.getPendingDeltas();
+        String sqlQuery = "select FILM_ID, LIKES_COUNT from FILMS order by LIKES_COUNT desc, FILM_ID limit ?";
+        if (deltas.isEmpty()) {
+            return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> rs.getLong("film_id"), count);
+        }
+        long lowered = deltas.values().stream().filter(delta -> delta < 0).count();
+        Map<Long, Long> likesCounts = new HashMap<>();
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) rs -> likesCounts.put(rs.getLong("film_id"),
+                rs.getLong("likes_count")), count + lowered);
+        List<Long> missing = deltas.keySet().stream()
+                .filter(filmId -> !likesCounts.containsKey(filmId))
+                .collect(Collectors.toList());
+        for (int from = 0; from < missing.size(); from += MAX_KEYS_PER_QUERY) {
+            List<Long> chunk = missing.subList(from, Math.min(missing.size(), from + MAX_KEYS_PER_QUERY));
+            String chunkQuery = "select FILM_ID, LIKES_COUNT from FILMS where FILM_ID in ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            jdbcTemplate.query(chunkQuery, (RowCallbackHandler) rs -> likesCounts.put(rs.getLong("film_id"),
+                    rs.getLong("likes_count")), chunk.toArray());
+        }
+        likesCounts.replaceAll((filmId, likes) -> likes + deltas.getOrDefault(filmId, 0L));
+        return likesCounts.keySet().stream()
+                .sorted(Comparator.comparingLong((Long filmId) -> -likesCounts.get(filmId))
+                        .thenComparingLong(filmId -> filmId))
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Likes> getAllLikes() {
+        String sqlQuery = "select USER_ID, FILM_ID, CREATED_AT from LIKES";
+        return jdbcTemplate.query(sqlQuery, this::mapRowToLikes);
+    }
+
+    @Override
+    public List<Likes> getLikesSince(LocalDateTime from) {
+        String sqlQuery = "select USER_ID, FILM_ID, CREATED_AT from LIKES where CREATED_AT >= ? order by CREATED_AT";
+        return jdbcTemplate.query(sqlQuery, this::mapRowToLikes, from);
+    }
+
+    // Пары ищутся по первичному ключу порциями, чтобы не упираться в число параметров запроса
+    @Override
+    public List<Likes> getLikes(List<LikeBatchItem> items) {
+        List<Likes> likes = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += MAX_KEYS_PER_QUERY) {
+            List<LikeBatchItem> chunk = items.subList(from, Math.min(items.size(), from + MAX_KEYS_PER_QUERY));
+            String sqlQuery = "select USER_ID, FILM_ID, CREATED_AT from LIKES where (USER_ID, FILM_ID) in ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), "(?, ?)")) + ")";
+            Object[] args = new Object[chunk.size() * 2];
+            for (int i = 0; i < chunk.size(); i++) {
+                args[2 * i] = chunk.get(i).getUserId();
+                args[2 * i + 1] = chunk.get(i).getFilmId();
+            }
+            likes.addAll(jdbcTemplate.query(sqlQuery, this::mapRowToLikes, args));
+        }
         return likes;
     }
 
+    private Likes mapRowToLikes(ResultSet resultSet, int rowNum) throws SQLException {
+        return Likes.builder()
+                .userId(resultSet.getLong("user_id"))
+                .filmId(resultSet.getLong("film_id"))
+                .createdAt(resultSet.getTimestamp("created_at").toLocalDateTime())
+                .build();
+    }
+
     private Map<String, Object> toMap(Likes likes) {
         Map<String, Object> values = new HashMap<>();
         values.put("user_Id", likes.getUserId());
@@ -2,22 +2,25 @@ package ru.yandex.practicum.filmorate.storage.dao;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.exception.VersionConflictException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
 import ru.yandex.practicum.filmorate.storage.dal.FriendsStorage;
 import ru.yandex.practicum.filmorate.storage.dal.UserStorage;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Component
-@Primary
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "jdbc", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class UserDbStorage implements UserStorage {
@@ -26,14 +29,19 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public Collection<User> getUsers() {
-        String sqlQuery = "select * from USERS";
-        return jdbcTemplate.query(sqlQuery, this::mapRowToUser);
+        return getUsers(EnumSet.allOf(UserField.class));
+    }
+
+    @Override
+    public Collection<User> getUsers(Set<UserField> fields) {
+        return queryUsers(null, new Object[0], fields);
     }
 
     @Override
     public User addUser(User user) {
         SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
                 .withTableName("users")
+                .usingColumns("email", "login", "name", "birthday")
                 .usingGeneratedKeyColumns("user_id");
         long userId = simpleJdbcInsert.executeAndReturnKey(toMap(user)).longValue();
         return getUserById(userId);
@@ -41,13 +49,22 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public User updateUser(User user) {
-        String sqlQuery = "update USERS set EMAIL = ?, LOGIN = ?, NAME = ?, BIRTHDAY = ? where USER_ID = ?";
-        jdbcTemplate.update(sqlQuery
-                , user.getEmail()
-                , user.getLogin()
-                , user.getName()
-                , user.getBirthday()
-                , user.getId());
+        String sqlQuery = "update USERS set EMAIL = ?, LOGIN = ?, NAME = ?, BIRTHDAY = ?, VERSION = VERSION + 1 " +
+                "where USER_ID = ?";
+        List<Object> args = new ArrayList<>(Arrays.asList(user.getEmail(), user.getLogin(), user.getName(),
+                user.getBirthday(), user.getId()));
+        // Условное обновление: запись меняется, только если ее версия совпадает с прочитанной клиентом
+        if (user.getVersion() != null) {
+            sqlQuery += " and VERSION = ?";
+            args.add(user.getVersion());
+        }
+        if (jdbcTemplate.update(sqlQuery, args.toArray()) == 0) {
+            if (getExistingUserIds(List.of(user.getId())).isEmpty()) {
+                throw new ObjectNotFoundException(String.format("User with id %s not found", user.getId()));
+            }
+            throw new VersionConflictException(String.format("User with id %s was modified, version %s is outdated",
+                    user.getId(), user.getVersion()));
+        }
         return getUserById(user.getId());
     }
 
@@ -63,6 +80,89 @@ public class UserDbStorage implements UserStorage {
         return user;
     }
 
+    @Override
+    public User getUserById(long userId, Set<UserField> fields) {
+        List<User> users = queryUsers("USER_ID = ?", new Object[]{userId}, fields);
+        if (users.isEmpty()) {
+            throw new ObjectNotFoundException(String.format("User with id %s not found", userId));
+        }
+        return users.get(0);
+    }
+
+    // Порядок совпадает с порядком id в запросе, отсутствующие пользователи пропускаются
+    @Override
+    public List<User> getUsersByIds(List<Long> userIds, Set<UserField> fields) {
+        Set<Long> uniqueIds = new LinkedHashSet<>(userIds);
+        if (uniqueIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, User> users = new HashMap<>();
+        queryUsers("USER_ID in (" + placeholders(uniqueIds.size()) + ")", uniqueIds.toArray(), fields)
+                .forEach(user -> users.put(user.getId(), user));
+        return userIds.stream()
+                .filter(users::containsKey)
+                .map(users::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<Long> getExistingUserIds(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        String sqlQuery = "select USER_ID from USERS where USER_ID in (" + placeholders(userIds.size()) + ")";
+        return new HashSet<>(jdbcTemplate.queryForList(sqlQuery, Long.class, userIds.toArray()));
+    }
+
+    // Друзья загружаются одним запросом на весь список и только если запрошены. Колонки незапрошенных полей
+    // не читаются; id и версия читаются всегда. Условие ссылается на колонку USER_ID из USERS и FRIENDS
+    private List<User> queryUsers(String condition, Object[] args, Set<UserField> fields) {
+        String where = condition == null ? "" : " where " + condition;
+
+        Map<Long, List<Long>> friends = new HashMap<>();
+        if (fields.contains(UserField.FRIENDS)) {
+            String friendsQuery = "select USER_ID, FRIEND_ID from FRIENDS" + where;
+            jdbcTemplate.query(friendsQuery, resultSet -> {
+                friends.computeIfAbsent(resultSet.getLong("user_id"), id -> new ArrayList<>())
+                        .add(resultSet.getLong("friend_id"));
+            }, args);
+        }
+
+        List<String> columns = new ArrayList<>(List.of("USER_ID", "VERSION"));
+        Map<UserField, String> fieldColumns = Map.of(
+                UserField.EMAIL, "EMAIL",
+                UserField.LOGIN, "LOGIN",
+                UserField.NAME, "NAME",
+                UserField.BIRTHDAY, "BIRTHDAY");
+        fields.stream()
+                .filter(fieldColumns::containsKey)
+                .map(fieldColumns::get)
+                .forEach(columns::add);
+        String usersQuery = "select " + String.join(", ", columns) + " from USERS" + where + " order by USER_ID";
+        return jdbcTemplate.query(usersQuery, (resultSet, rowNum) -> {
+            long userId = resultSet.getLong("user_id");
+            User.UserBuilder user = User.builder()
+                    .id(userId)
+                    .version(resultSet.getLong("version"));
+            if (fields.contains(UserField.EMAIL)) {
+                user.email(resultSet.getString("email"));
+            }
+            if (fields.contains(UserField.LOGIN)) {
+                user.login(resultSet.getString("login"));
+            }
+            if (fields.contains(UserField.NAME)) {
+                user.name(resultSet.getString("name"));
+            }
+            if (fields.contains(UserField.BIRTHDAY)) {
+                user.birthday(resultSet.getDate("birthday").toLocalDate());
+            }
+            if (fields.contains(UserField.FRIENDS)) {
+                user.friends(friends.getOrDefault(userId, new ArrayList<>()));
+            }
+            return user.build();
+        }, args);
+    }
+
     private Map<String, Object> toMap(User user) {
         Map<String, Object> values = new HashMap<>();
         values.put("email", user.getEmail());
@@ -80,6 +180,11 @@ public class UserDbStorage implements UserStorage {
                 .name(resultSet.getString("name"))
                 .birthday(resultSet.getDate("birthday").toLocalDate())
                 .friends(friendsStorage.getListOfFriends(resultSet.getLong("user_id")))
+                .version(resultSet.getLong("version"))
                 .build();
     }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
 }
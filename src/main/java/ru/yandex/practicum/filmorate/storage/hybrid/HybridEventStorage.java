@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.hybrid;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.dal.EventStorage;
+
+import java.util.List;
+
+// Событие получает id в БД и с ним же копируется в память; чтение из памяти
+@RequiredArgsConstructor
+public class HybridEventStorage implements EventStorage {
+    private final EventStorage dbStorage;
+    private final EventStorage memoryStorage;
+
+    @Override
+    public synchronized Event addEvent(Event event) {
+        return memoryStorage.addEvent(dbStorage.addEvent(event));
+    }
+
+    @Override
+    public List<Event> getFeed(long userId, long afterEventId, int limit) {
+        return memoryStorage.getFeed(userId, afterEventId, limit);
+    }
+
+    @Override
+    public List<Event> getEvents(long afterEventId, int limit) {
+        return memoryStorage.getEvents(afterEventId, limit);
+    }
+
+    @Override
+    public long getLastEventId() {
+        return memoryStorage.getLastEventId();
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.storage.hybrid;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.dal.FilmGenreLineStorage;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class HybridFilmGenreLineStorage implements FilmGenreLineStorage {
+    private final FilmGenreLineStorage dbStorage;
+    private final FilmGenreLineStorage memoryStorage;
+
+    @Override
+    public synchronized void addGenres(List<Genre> genres, long filmId) {
+        dbStorage.addGenres(genres, filmId);
+        memoryStorage.addGenres(genres, filmId);
+    }
+
+    @Override
+    public synchronized void deleteGenres(long filmId) {
+        dbStorage.deleteGenres(filmId);
+        memoryStorage.deleteGenres(filmId);
+    }
+
+    @Override
+    public synchronized void deleteGenres(long filmId, List<Integer> genreIds) {
+        dbStorage.deleteGenres(filmId, genreIds);
+        memoryStorage.deleteGenres(filmId, genreIds);
+    }
+
+    @Override
+    public List<Integer> getListOfGenres(long id) {
+        return memoryStorage.getListOfGenres(id);
+    }
+}
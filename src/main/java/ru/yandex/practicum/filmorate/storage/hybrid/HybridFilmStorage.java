@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage.hybrid;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.storage.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.inMemory.InMemoryDatabase;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+// Запись сначала в БД, затем сохраненный фильм с жанрами копируется в память; чтение из памяти
+@RequiredArgsConstructor
+public class HybridFilmStorage implements FilmStorage {
+    private final FilmStorage dbStorage;
+    private final FilmStorage memoryStorage;
+    private final InMemoryDatabase database;
+
+    @Override
+    public Collection<Film> getFilms() {
+        return memoryStorage.getFilms();
+    }
+
+    @Override
+    public Collection<Film> getFilms(Set<FilmField> fields) {
+        return memoryStorage.getFilms(fields);
+    }
+
+    @Override
+    public synchronized Film addFilm(Film film) {
+        Film saved = dbStorage.addFilm(film);
+        database.putFilm(saved);
+        return memoryStorage.getFilmById(saved.getId());
+    }
+
+    @Override
+    public synchronized Film updateFilm(Film film) {
+        Film saved = dbStorage.updateFilm(film);
+        database.putFilm(saved);
+        return memoryStorage.getFilmById(saved.getId(), FilmField.withoutLikes());
+    }
+
+    @Override
+    public Film getFilmById(long filmId) {
+        return memoryStorage.getFilmById(filmId);
+    }
+
+    @Override
+    public Film getFilmById(long filmId, Set<FilmField> fields) {
+        return memoryStorage.getFilmById(filmId, fields);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+        return memoryStorage.getFilmsByIds(filmIds);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds, Set<FilmField> fields) {
+        return memoryStorage.getFilmsByIds(filmIds, fields);
+    }
+
+    @Override
+    public Set<Long> getExistingFilmIds(Collection<Long> filmIds) {
+        return memoryStorage.getExistingFilmIds(filmIds);
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage.hybrid;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.FriendBatchItem;
+import ru.yandex.practicum.filmorate.model.Friends;
+import ru.yandex.practicum.filmorate.storage.dal.FriendsStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Дружба попадает в память, только если она изменила данные в БД; чтение из памяти
+@RequiredArgsConstructor
+public class HybridFriendsStorage implements FriendsStorage {
+    private final FriendsStorage dbStorage;
+    private final FriendsStorage memoryStorage;
+
+    @Override
+    public synchronized boolean addAsFriend(long userId, long friendId) {
+        boolean addition = dbStorage.addAsFriend(userId, friendId);
+        if (addition) {
+            memoryStorage.addAsFriend(userId, friendId);
+        }
+        return addition;
+    }
+
+    @Override
+    public synchronized boolean removeFromFriends(long userId, long friendId) {
+        boolean removal = dbStorage.removeFromFriends(userId, friendId);
+        if (removal) {
+            memoryStorage.removeFromFriends(userId, friendId);
+        }
+        return removal;
+    }
+
+    @Override
+    public synchronized boolean[] applyFriends(long userId, List<FriendBatchItem> items) {
+        boolean[] applied = dbStorage.applyFriends(userId, items);
+        List<FriendBatchItem> appliedItems = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (applied[i]) {
+                appliedItems.add(items.get(i));
+            }
+        }
+        if (!appliedItems.isEmpty()) {
+            memoryStorage.applyFriends(userId, appliedItems);
+        }
+        return applied;
+    }
+
+    @Override
+    public List<Long> getListOfFriends(long userId) {
+        return memoryStorage.getListOfFriends(userId);
+    }
+
+    @Override
+    public List<Long> getListOfFriends(long userId, long afterFriendId, int limit) {
+        return memoryStorage.getListOfFriends(userId, afterFriendId, limit);
+    }
+
+    @Override
+    public List<Long> getAListOfMutualFriends(long userId, long otherId) {
+        return memoryStorage.getAListOfMutualFriends(userId, otherId);
+    }
+
+    @Override
+    public List<Long> getAListOfMutualFriends(long userId, long otherId, long afterFriendId, int limit) {
+        return memoryStorage.getAListOfMutualFriends(userId, otherId, afterFriendId, limit);
+    }
+
+    @Override
+    public List<Friends> getAllFriends() {
+        return memoryStorage.getAllFriends();
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.storage.hybrid;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.Likes;
+import ru.yandex.practicum.filmorate.storage.dal.LikesStorage;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Лайк попадает в память, только если он изменил данные в БД; чтение из памяти
+@RequiredArgsConstructor
+public class HybridLikesStorage implements LikesStorage {
+    private final LikesStorage dbStorage;
+    private final LikesStorage memoryStorage;
+
+    @Override
+    public synchronized boolean addLike(long filmId, long userId) {
+        boolean addition = dbStorage.addLike(filmId, userId);
+        if (addition) {
+            memoryStorage.addLike(filmId, userId);
+        }
+        return addition;
+    }
+
+    @Override
+    public synchronized boolean unlike(long filmId, long userId) {
+        boolean removal = dbStorage.unlike(filmId, userId);
+        if (removal) {
+            memoryStorage.unlike(filmId, userId);
+        }
+        return removal;
+    }
+
+    @Override
+    public synchronized boolean[] applyLikes(List<LikeBatchItem> items) {
+        boolean[] applied = dbStorage.applyLikes(items);
+        List<LikeBatchItem> appliedItems = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (applied[i]) {
+                appliedItems.add(items.get(i));
+            }
+        }
+        if (!appliedItems.isEmpty()) {
+            memoryStorage.applyLikes(appliedItems);
+        }
+        return applied;
+    }
+
+    @Override
+    public List<Long> getListOfLikes(long filmId) {
+        return memoryStorage.getListOfLikes(filmId);
+    }
+
+    @Override
+    public List<Long> getListOfLikes(long filmId, long afterUserId, int limit) {
+        return memoryStorage.getListOfLikes(filmId, afterUserId, limit);
+    }
+
+    @Override
+    public List<Long> getTheBestFilms(int count) {
+        return memoryStorage.getTheBestFilms(count);
+    }
+
+    @Override
+    public List<Likes> getAllLikes() {
+        return memoryStorage.getAllLikes();
+    }
+
+    @Override
+    public List<Likes> getLikesSince(LocalDateTime from) {
+        return memoryStorage.getLikesSince(from);
+    }
+
+    @Override
+    public List<Likes> getLikes(List<LikeBatchItem> items) {
+        return memoryStorage.getLikes(items);
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.storage.hybrid;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.service.GenreService;
+import ru.yandex.practicum.filmorate.service.MpaService;
+import ru.yandex.practicum.filmorate.storage.dal.*;
+import ru.yandex.practicum.filmorate.storage.dao.*;
+import ru.yandex.practicum.filmorate.storage.inMemory.*;
+
+// Режим hybrid (filmorate.storage.mode=hybrid): чтение из памяти, запись сквозная - сначала в H2, затем в память.
+// Хранилища БД создаются бинами, чтобы на них работал @Transactional, но не участвуют во внедрении по типу:
+// сервисы и индексы видят только гибридные хранилища. Справочники и загрузка памяти из H2 общие с режимом
+// write-behind, его хранилища описаны в WriteBehindStorageConfiguration
+@Configuration
+@ConditionalOnExpression("'${filmorate.storage.mode:jdbc}' matches 'hybrid|write-behind'")
+@RequiredArgsConstructor
+public class HybridStorageConfiguration {
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmLikesCounters likesCounters;
+    private final InMemoryDatabase database;
+
+    @Bean(autowireCandidate = false)
+    public GenreDbStorage genreDbStorage() {
+        return new GenreDbStorage(jdbcTemplate);
+    }
+
+    @Bean(autowireCandidate = false)
+    public MpaDbStorage mpaDbStorage() {
+        return new MpaDbStorage(jdbcTemplate);
+    }
+
+    @Bean(autowireCandidate = false)
+    public FilmGenreLineDbStorage filmGenreLineDbStorage() {
+        return new FilmGenreLineDbStorage(jdbcTemplate);
+    }
+
+    @Bean(autowireCandidate = false)
+    public LikesDbStorage likesDbStorage() {
+        return new LikesDbStorage(jdbcTemplate, likesCounters);
+    }
+
+    @Bean(autowireCandidate = false)
+    public FriendsDbStorage friendsDbStorage() {
+        return new FriendsDbStorage(jdbcTemplate);
+    }
+
+    @Bean(autowireCandidate = false)
+    public EventDbStorage eventDbStorage() {
+        return new EventDbStorage(jdbcTemplate);
+    }
+
+    @Bean(autowireCandidate = false)
+    public UserDbStorage userDbStorage() {
+        return new UserDbStorage(jdbcTemplate, friendsDbStorage());
+    }
+
+    // Фильм в БД собирается только из таблиц БД: память обновляется уже после записи
+    @Bean(autowireCandidate = false)
+    public FilmDbStorage filmDbStorage() {
+        return new FilmDbStorage(jdbcTemplate, likesDbStorage(), new MpaService(mpaDbStorage()),
+                new GenreService(genreDbStorage(), filmGenreLineDbStorage()), filmGenreLineDbStorage(),
+                likesCounters);
+    }
+
+    // Справочники не меняются через API, поэтому читаются только из памяти
+    @Bean
+    public GenreStorage genreStorage() {
+        return new InMemoryGenreStorage(database);
+    }
+
+    @Bean
+    public MpaStorage mpaStorage() {
+        return new InMemoryMpaStorage(database);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "hybrid")
+    public FilmGenreLineStorage filmGenreLineStorage() {
+        return new HybridFilmGenreLineStorage(filmGenreLineDbStorage(), new InMemoryFilmGenreLineStorage(database));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "hybrid")
+    public LikesStorage likesStorage() {
+        return new HybridLikesStorage(likesDbStorage(), new InMemoryLikesStorage(database));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "hybrid")
+    public FriendsStorage friendsStorage() {
+        return new HybridFriendsStorage(friendsDbStorage(), new InMemoryFriendsStorage(database));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "hybrid")
+    public EventStorage eventStorage() {
+        return new HybridEventStorage(eventDbStorage(), new InMemoryEventStorage(database));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "hybrid")
+    public UserStorage userStorage() {
+        return new HybridUserStorage(userDbStorage(), new InMemoryUserStorage(database), database);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "hybrid")
+    public FilmStorage filmStorage() {
+        return new HybridFilmStorage(filmDbStorage(), new InMemoryFilmStorage(database), database);
+    }
+
+    @Bean
+    public HybridStorageLoader hybridStorageLoader() {
+        return new HybridStorageLoader(database, genreDbStorage(), mpaDbStorage(), userDbStorage(), filmDbStorage(),
+                friendsDbStorage(), likesDbStorage(), eventDbStorage());
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage.hybrid;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.storage.dal.*;
+import ru.yandex.practicum.filmorate.storage.inMemory.InMemoryDatabase;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+// Заполняет память из H2 до загрузки индексов: они строятся уже по гибридным хранилищам
+@RequiredArgsConstructor
+@Slf4j
+public class HybridStorageLoader {
+    private static final int EVENTS_PAGE_SIZE = 1000;
+
+    private final InMemoryDatabase database;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final FriendsStorage friendsStorage;
+    private final LikesStorage likesStorage;
+    private final EventStorage eventStorage;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void load() {
+        database.clear();
+        genreStorage.getGenres().forEach(database::putGenre);
+        mpaStorage.getMpa().forEach(database::putMpa);
+        Collection<User> users = userStorage.getUsers(EnumSet.complementOf(EnumSet.of(UserField.FRIENDS)));
+        users.forEach(database::putUser);
+        Collection<Film> films = filmStorage.getFilms(EnumSet.complementOf(EnumSet.of(FilmField.LIKES,
+                FilmField.LIKES_COUNT)));
+        films.forEach(database::putFilm);
+        friendsStorage.getAllFriends().forEach(friends -> database.putFriend(friends.getUserId(),
+                friends.getFriendId()));
+        likesStorage.getAllLikes().forEach(database::putLike);
+        long events = 0;
+        List<Event> page = eventStorage.getEvents(0, EVENTS_PAGE_SIZE);
+        while (!page.isEmpty()) {
+            page.forEach(database::putEvent);
+            events += page.size();
+            page = eventStorage.getEvents(page.get(page.size() - 1).getEventId(), EVENTS_PAGE_SIZE);
+        }
+        log.info("Hybrid storage loaded: {} users, {} films, {} events", users.size(), films.size(),
+                events);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storage.hybrid;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.storage.dal.UserStorage;
+import ru.yandex.practicum.filmorate.storage.inMemory.InMemoryDatabase;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+// Запись сначала в БД, затем сохраненная строка (с id и версией из БД) копируется в память; чтение из памяти
+@RequiredArgsConstructor
+public class HybridUserStorage implements UserStorage {
+    private final UserStorage dbStorage;
+    private final UserStorage memoryStorage;
+    private final InMemoryDatabase database;
+
+    @Override
+    public Collection<User> getUsers() {
+        return memoryStorage.getUsers();
+    }
+
+    @Override
+    public Collection<User> getUsers(Set<UserField> fields) {
+        return memoryStorage.getUsers(fields);
+    }
+
+    @Override
+    public synchronized User addUser(User user) {
+        User saved = dbStorage.addUser(user);
+        database.putUser(saved);
+        return memoryStorage.getUserById(saved.getId());
+    }
+
+    @Override
+    public synchronized User updateUser(User user) {
+        User saved = dbStorage.updateUser(user);
+        database.putUser(saved);
+        return memoryStorage.getUserById(saved.getId());
+    }
+
+    @Override
+    public User getUserById(long userId) {
+        return memoryStorage.getUserById(userId);
+    }
+
+    @Override
+    public User getUserById(long userId, Set<UserField> fields) {
+        return memoryStorage.getUserById(userId, fields);
+    }
+
+    @Override
+    public List<User> getUsersByIds(List<Long> userIds, Set<UserField> fields) {
+        return memoryStorage.getUsersByIds(userIds, fields);
+    }
+
+    @Override
+    public Set<Long> getExistingUserIds(Collection<Long> userIds) {
+        return memoryStorage.getExistingUserIds(userIds);
+    }
+}
@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.storage.inMemory;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Likes;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Таблицы режимов memory и hybrid: те же данные, что и в H2, в потокобезопасных отсортированных коллекциях.
+// Фильмы и пользователи хранятся строками без связей, лайки, друзья и жанры фильмов - отдельными "таблицами"
+@Component
+@ConditionalOnExpression("'${filmorate.storage.mode:jdbc}' != 'jdbc'")
+public class InMemoryDatabase {
+    final NavigableMap<Integer, Genre> genres = new ConcurrentSkipListMap<>();
+    final NavigableMap<Integer, Mpa> mpa = new ConcurrentSkipListMap<>();
+    final NavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    final NavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    final Map<Long, NavigableSet<Long>> friends = new ConcurrentHashMap<>();
+    final Map<Long, NavigableMap<Long, Likes>> likes = new ConcurrentHashMap<>(); // фильм -> пользователь -> лайк
+    final Map<Long, NavigableSet<Integer>> filmGenres = new ConcurrentHashMap<>();
+    final NavigableMap<Long, Event> events = new ConcurrentSkipListMap<>();
+    final Map<Long, NavigableMap<Long, Event>> eventsByUser = new ConcurrentHashMap<>();
+    private final AtomicLong userSequence = new AtomicLong();
+    private final AtomicLong filmSequence = new AtomicLong();
+    private final AtomicLong eventSequence = new AtomicLong();
+
+    // Справочники совпадают с data.sql; в режиме hybrid они перечитываются из БД
+    public InMemoryDatabase() {
+        String[] genreNames = {"Комедия", "Драма", "Мультфильм", "Триллер", "Документальный", "Боевик"};
+        for (int i = 0; i < genreNames.length; i++) {
+            putGenre(Genre.builder().id(i + 1).name(genreNames[i]).build());
+        }
+        String[] mpaNames = {"G", "PG", "PG-13", "R", "NC-17"};
+        for (int i = 0; i < mpaNames.length; i++) {
+            putMpa(Mpa.builder().id(i + 1).name(mpaNames[i]).build());
+        }
+    }
+
+    // Очищает все таблицы, кроме справочников, и сбрасывает счетчики id
+    public synchronized void clear() {
+        users.clear();
+        films.clear();
+        friends.clear();
+        likes.clear();
+        filmGenres.clear();
+        events.clear();
+        eventsByUser.clear();
+        userSequence.set(0);
+        filmSequence.set(0);
+        eventSequence.set(0);
+    }
+
+    public void putGenre(Genre genre) {
+        genres.put(genre.getId(), genre);
+    }
+
+    public void putMpa(Mpa rating) {
+        mpa.put(rating.getId(), rating);
+    }
+
+    // Строка пользователя без списка друзей. Явный id сдвигает счетчик, чтобы новые id его не повторили
+    public void putUser(User user) {
+        userSequence.accumulateAndGet(user.getId(), Math::max);
+        users.put(user.getId(), User.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .login(user.getLogin())
+                .name(user.getName())
+                .birthday(user.getBirthday())
+                .version(user.getVersion() == null ? 0 : user.getVersion())
+                .build());
+    }
+
+    // Строка фильма без лайков; жанры фильма переписываются, если они переданы
+    public void putFilm(Film film) {
+        filmSequence.accumulateAndGet(film.getId(), Math::max);
+        films.put(film.getId(), Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .rate(film.getRate())
+                .mpa(film.getMpa() == null ? null : Mpa.builder().id(film.getMpa().getId()).build())
+                .version(film.getVersion() == null ? 0 : film.getVersion())
+                .build());
+        if (film.getGenres() != null) {
+            NavigableSet<Integer> genreIds = new ConcurrentSkipListSet<>();
+            film.getGenres().forEach(genre -> genreIds.add(genre.getId()));
+            filmGenres.put(film.getId(), genreIds);
+        }
+    }
+
+    public boolean putFriend(long userId, long friendId) {
+        return friends.computeIfAbsent(userId, id -> new ConcurrentSkipListSet<>()).add(friendId);
+    }
+
+    public boolean putLike(Likes like) {
+        return likes.computeIfAbsent(like.getFilmId(), id -> new ConcurrentSkipListMap<>())
+                .putIfAbsent(like.getUserId(), like) == null;
+    }
+
+    public void putEvent(Event event) {
+        eventSequence.accumulateAndGet(event.getEventId(), Math::max);
+        events.put(event.getEventId(), event);
+        if (event.getUserId() != null) {
+            eventsByUser.computeIfAbsent(event.getUserId(), id -> new ConcurrentSkipListMap<>())
+                    .put(event.getEventId(), event);
+        }
+    }
+
+    long nextUserId() {
+        return userSequence.incrementAndGet();
+    }
+
+    long nextFilmId() {
+        return filmSequence.incrementAndGet();
+    }
+
+    long nextEventId() {
+        return eventSequence.incrementAndGet();
+    }
+}
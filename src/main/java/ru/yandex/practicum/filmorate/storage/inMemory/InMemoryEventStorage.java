@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.storage.inMemory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.dal.EventStorage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.stream.Collectors;
+
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "memory")
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryEventStorage implements EventStorage {
+    private final InMemoryDatabase database;
+
+    // Явно переданный id сохраняется (так в память попадают события, уже записанные в БД)
+    @Override
+    public Event addEvent(Event event) {
+        if (event.getEventId() == 0) {
+            event.setEventId(database.nextEventId());
+        }
+        database.putEvent(event);
+        return event;
+    }
+
+    @Override
+    public List<Event> getFeed(long userId, long afterEventId, int limit) {
+        return page(database.eventsByUser.getOrDefault(userId, Collections.emptyNavigableMap()), afterEventId, limit);
+    }
+
+    @Override
+    public List<Event> getEvents(long afterEventId, int limit) {
+        return page(database.events, afterEventId, limit);
+    }
+
+    @Override
+    public long getLastEventId() {
+        return database.events.isEmpty() ? 0 : database.events.lastKey();
+    }
+
+    private List<Event> page(NavigableMap<Long, Event> events, long afterEventId, int limit) {
+        return events.tailMap(afterEventId, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+}
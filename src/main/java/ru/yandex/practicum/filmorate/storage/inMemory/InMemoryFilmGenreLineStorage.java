@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.storage.inMemory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.dal.FilmGenreLineStorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "memory")
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryFilmGenreLineStorage implements FilmGenreLineStorage {
+    private final InMemoryDatabase database;
+
+    @Override
+    public void addGenres(List<Genre> genres, long filmId) {
+        NavigableSet<Integer> genreIds = database.filmGenres.computeIfAbsent(filmId,
+                id -> new ConcurrentSkipListSet<>());
+        genres.forEach(genre -> genreIds.add(genre.getId()));
+    }
+
+    @Override
+    public void deleteGenres(long filmId) {
+        database.filmGenres.remove(filmId);
+    }
+
+    @Override
+    public void deleteGenres(long filmId, List<Integer> genreIds) {
+        database.filmGenres.getOrDefault(filmId, Collections.emptyNavigableSet()).removeAll(genreIds);
+    }
+
+    @Override
+    public List<Integer> getListOfGenres(long id) {
+        return new ArrayList<>(database.filmGenres.getOrDefault(id, Collections.emptyNavigableSet()));
+    }
+}
@@ -1,58 +1,170 @@
 package ru.yandex.practicum.filmorate.storage.inMemory;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
 import ru.yandex.practicum.filmorate.exception.RedoCreationException;
+import ru.yandex.practicum.filmorate.exception.VersionConflictException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.dal.FilmStorage;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "memory")
+@RequiredArgsConstructor
 @Slf4j
 public class InMemoryFilmStorage implements FilmStorage {
-    private long id = 0;
-    private final Map<Long, Film> films = new HashMap<>();
+    private final InMemoryDatabase database;
 
     @Override
     public Collection<Film> getFilms() {
-        return films.values();
+        return getFilms(EnumSet.allOf(FilmField.class));
     }
 
     @Override
-    public Film addFilm(Film film) {
-        if (films.containsKey(film.getId())) {
+    public Collection<Film> getFilms(Set<FilmField> fields) {
+        return database.films.values().stream()
+                .map(film -> project(film, fields))
+                .collect(Collectors.toList());
+    }
+
+    // Явно переданный id сохраняется (так в память попадают фильмы, уже записанные в БД)
+    @Override
+    public synchronized Film addFilm(Film film) {
+        if (database.films.containsKey(film.getId())) {
             throw new RedoCreationException("Movie already exists");
         }
-        if (film.getId() == 0) {
-            generateId();
-            film.setId(id);
+        checkReferences(film);
+        long filmId = film.getId() == 0 ? database.nextFilmId() : film.getId();
+        database.putFilm(copy(film, filmId, film.getVersion() == null ? 0 : film.getVersion()));
+        return getFilmById(filmId);
+    }
+
+    @Override
+    public synchronized Film updateFilm(Film film) {
+        Film old = database.films.get(film.getId());
+        if (old == null) {
+            throw new ObjectNotFoundException(String.format("Film with id %s not found", film.getId()));
+        }
+        if (film.getVersion() != null && !film.getVersion().equals(old.getVersion())) {
+            throw new VersionConflictException(String.format("Film with id %s was modified, version %s is outdated",
+                    film.getId(), film.getVersion()));
         }
-        films.put(film.getId(), film);
-        return film;
+        checkReferences(film);
+        database.putFilm(copy(film, film.getId(), old.getVersion() + 1));
+        return getFilmById(film.getId(), FilmField.withoutLikes());
     }
 
     @Override
-    public Film updateFilm(Film film) {
-        filmExistenceCheck(film.getId());
-        films.put(film.getId(), film);
-        return film;
+    public Film getFilmById(long filmId) {
+        return getFilmById(filmId, EnumSet.allOf(FilmField.class));
     }
 
     @Override
-    public Film getFilmById(long id) {
-        filmExistenceCheck(id);
-        return films.get(id);
+    public Film getFilmById(long filmId, Set<FilmField> fields) {
+        Film film = database.films.get(filmId);
+        if (film == null) {
+            throw new ObjectNotFoundException(String.format("Film with id %s not found", filmId));
+        }
+        return project(film, fields);
     }
 
-    private void generateId() {
-        id++;
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+        return getFilmsByIds(filmIds, EnumSet.allOf(FilmField.class));
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds, Set<FilmField> fields) {
+        return filmIds.stream()
+                .map(database.films::get)
+                .filter(Objects::nonNull)
+                .map(film -> project(film, fields))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<Long> getExistingFilmIds(Collection<Long> filmIds) {
+        return filmIds.stream()
+                .filter(database.films::containsKey)
+                .collect(Collectors.toSet());
     }
 
-    private void filmExistenceCheck(long id) {
-        if (!films.containsKey(id)) {
-            throw new ObjectNotFoundException(String.format("Film with id %s not found", id));
+    // Те же ограничения, что и внешние ключи FILMS и FILM_GENRE_LINE в БД
+    private void checkReferences(Film film) {
+        if (film.getMpa() != null && !database.mpa.containsKey(film.getMpa().getId())) {
+            throw new DataIntegrityViolationException(String.format("MPA with id %s not found",
+                    film.getMpa().getId()));
+        }
+        if (film.getGenres() != null) {
+            film.getGenres().stream()
+                    .filter(genre -> !database.genres.containsKey(genre.getId()))
+                    .findFirst()
+                    .ifPresent(genre -> {
+                        throw new DataIntegrityViolationException(String.format("Genre with id %s not found",
+                                genre.getId()));
+                    });
+        }
+    }
+
+    // Жанры без переданного списка очищаются, как и при обновлении в БД
+    private Film copy(Film film, long filmId, long version) {
+        return Film.builder()
+                .id(filmId)
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .rate(film.getRate())
+                .mpa(film.getMpa())
+                .genres(film.getGenres() == null ? new ArrayList<>() : film.getGenres())
+                .version(version)
+                .build();
+    }
+
+    private Film project(Film row, Set<FilmField> fields) {
+        long filmId = row.getId();
+        Film.FilmBuilder film = Film.builder()
+                .id(filmId)
+                .version(row.getVersion());
+        if (fields.contains(FilmField.NAME)) {
+            film.name(row.getName());
+        }
+        if (fields.contains(FilmField.DESCRIPTION)) {
+            film.description(row.getDescription());
+        }
+        if (fields.contains(FilmField.RELEASE_DATE)) {
+            film.releaseDate(row.getReleaseDate());
+        }
+        if (fields.contains(FilmField.DURATION)) {
+            film.duration(row.getDuration());
+        }
+        if (fields.contains(FilmField.RATE)) {
+            film.rate(row.getRate());
+        }
+        if (fields.contains(FilmField.MPA)) {
+            film.mpa(row.getMpa() == null ? null : database.mpa.get(row.getMpa().getId()));
+        }
+        Map<Long, ?> likes = database.likes.getOrDefault(filmId, Collections.emptyNavigableMap());
+        if (fields.contains(FilmField.LIKES)) {
+            film.likes(new ArrayList<>(likes.keySet()));
+        }
+        if (fields.contains(FilmField.LIKES_COUNT)) {
+            film.likesCount((long) likes.size());
+        }
+        if (fields.contains(FilmField.GENRES)) {
+            List<Genre> genres = new ArrayList<>();
+            database.filmGenres.getOrDefault(filmId, Collections.emptyNavigableSet())
+                    .forEach(genreId -> genres.add(database.genres.get(genreId)));
+            film.genres(genres);
         }
+        return film.build();
     }
 }
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage.inMemory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FriendBatchItem;
+import ru.yandex.practicum.filmorate.model.Friends;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.dal.FriendsStorage;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "memory")
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryFriendsStorage implements FriendsStorage {
+    private final InMemoryDatabase database;
+
+    // Повторное добавление нарушает первичный ключ, как и вставка в FRIENDS
+    @Override
+    public synchronized boolean addAsFriend(long userId, long friendId) {
+        if (!database.putFriend(userId, friendId)) {
+            throw new DuplicateKeyException(String.format("User with id %s is already friends with user with id %s",
+                    userId, friendId));
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean removeFromFriends(long userId, long friendId) {
+        NavigableSet<Long> friends = database.friends.get(userId);
+        return friends != null && friends.remove(friendId);
+    }
+
+    @Override
+    public synchronized boolean[] applyFriends(long userId, List<FriendBatchItem> items) {
+        boolean[] applied = new boolean[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            FriendBatchItem item = items.get(i);
+            applied[i] = item.getOperation() == Operation.ADD
+                    ? database.putFriend(userId, item.getFriendId())
+                    : removeFromFriends(userId, item.getFriendId());
+        }
+        return applied;
+    }
+
+    @Override
+    public List<Long> getListOfFriends(long userId) {
+        return new ArrayList<>(friendsOf(userId));
+    }
+
+    @Override
+    public List<Long> getListOfFriends(long userId, long afterFriendId, int limit) {
+        return friendsOf(userId).tailSet(afterFriendId, false).stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> getAListOfMutualFriends(long userId, long otherId) {
+        return getAListOfMutualFriends(userId, otherId, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Long> getAListOfMutualFriends(long userId, long otherId, long afterFriendId, int limit) {
+        NavigableSet<Long> otherFriends = friendsOf(otherId);
+        return friendsOf(userId).tailSet(afterFriendId, false).stream()
+                .filter(otherFriends::contains)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Friends> getAllFriends() {
+        List<Friends> friends = new ArrayList<>();
+        database.friends.forEach((userId, friendIds) -> friendIds.forEach(friendId -> friends.add(Friends.builder()
+                .userId(userId)
+                .friendId(friendId)
+                .build())));
+        return friends;
+    }
+
+    private NavigableSet<Long> friendsOf(long userId) {
+        return database.friends.getOrDefault(userId, Collections.emptyNavigableSet());
+    }
+}
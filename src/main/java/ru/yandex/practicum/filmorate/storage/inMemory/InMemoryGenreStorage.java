@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.inMemory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.dal.GenreStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "memory")
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryGenreStorage implements GenreStorage {
+    private final InMemoryDatabase database;
+
+    @Override
+    public Collection<Genre> getGenres() {
+        return new ArrayList<>(database.genres.values());
+    }
+
+    @Override
+    public Genre getGenreById(int genreId) {
+        Genre genre = database.genres.get(genreId);
+        if (genre == null) {
+            throw new ObjectNotFoundException(String.format("Genre with id %s not found", genreId));
+        }
+        return genre;
+    }
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.storage.inMemory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.Likes;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.dal.LikesStorage;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "memory")
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryLikesStorage implements LikesStorage {
+    private final InMemoryDatabase database;
+
+    // Повторный лайк нарушает первичный ключ, как и вставка в LIKES
+    @Override
+    public synchronized boolean addLike(long filmId, long userId) {
+        if (!database.putLike(like(filmId, userId))) {
+            throw new DuplicateKeyException(String.format("User with id %s already liked the movie with id %s",
+                    userId, filmId));
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean unlike(long filmId, long userId) {
+        NavigableMap<Long, Likes> filmLikes = database.likes.get(filmId);
+        return filmLikes != null && filmLikes.remove(userId) != null;
+    }
+
+    @Override
+    public synchronized boolean[] applyLikes(List<LikeBatchItem> items) {
+        boolean[] applied = new boolean[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            LikeBatchItem item = items.get(i);
+            applied[i] = item.getOperation() == Operation.ADD
+                    ? database.putLike(like(item.getFilmId(), item.getUserId()))
+                    : unlike(item.getFilmId(), item.getUserId());
+        }
+        return applied;
+    }
+
+    @Override
+    public List<Long> getListOfLikes(long filmId) {
+        return new ArrayList<>(database.likes.getOrDefault(filmId, Collections.emptyNavigableMap()).keySet());
+    }
+
+    @Override
+    public List<Long> getListOfLikes(long filmId, long afterUserId, int limit) {
+        return database.likes.getOrDefault(filmId, Collections.emptyNavigableMap())
+                .tailMap(afterUserId, false)
+                .keySet().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    // Все фильмы, включая фильмы без лайков, в порядке индекса FILMS (LIKES_COUNT desc, FILM_ID)
+    @Override
+    public List<Long> getTheBestFilms(int count) {
+        return database.films.keySet().stream()
+                .sorted(Comparator.comparingInt((Long filmId) -> -likesCount(filmId))
+                        .thenComparingLong(filmId -> filmId))
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Likes> getAllLikes() {
+        return database.likes.values().stream()
+                .flatMap(filmLikes -> filmLikes.values().stream())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Likes> getLikesSince(LocalDateTime from) {
+        return getAllLikes().stream()
+                .filter(like -> !like.getCreatedAt().isBefore(from))
+                .sorted(Comparator.comparing(Likes::getCreatedAt))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Likes> getLikes(List<LikeBatchItem> items) {
+        return items.stream()
+                .map(item -> database.likes.getOrDefault(item.getFilmId(), Collections.emptyNavigableMap())
+                        .get(item.getUserId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private int likesCount(long filmId) {
+        return database.likes.getOrDefault(filmId, Collections.emptyNavigableMap()).size();
+    }
+
+    private Likes like(long filmId, long userId) {
+        return Likes.builder()
+                .filmId(filmId)
+                .userId(userId)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.inMemory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.dal.MpaStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "memory")
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryMpaStorage implements MpaStorage {
+    private final InMemoryDatabase database;
+
+    @Override
+    public Collection<Mpa> getMpa() {
+        return new ArrayList<>(database.mpa.values());
+    }
+
+    @Override
+    public Mpa getMpaById(int mpaId) {
+        Mpa mpa = database.mpa.get(mpaId);
+        if (mpa == null) {
+            throw new ObjectNotFoundException(String.format("MPA with id %s not found", mpaId));
+        }
+        return mpa;
+    }
+}
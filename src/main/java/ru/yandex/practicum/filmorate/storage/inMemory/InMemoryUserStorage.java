@@ -1,60 +1,124 @@
 package ru.yandex.practicum.filmorate.storage.inMemory;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
 import ru.yandex.practicum.filmorate.exception.RedoCreationException;
+import ru.yandex.practicum.filmorate.exception.VersionConflictException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
 import ru.yandex.practicum.filmorate.storage.dal.UserStorage;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "memory")
+@RequiredArgsConstructor
 @Slf4j
 public class InMemoryUserStorage implements UserStorage {
-    private long id = 0;
-    private final Map<Long, User> users = new HashMap<>();
+    private final InMemoryDatabase database;
 
     @Override
     public Collection<User> getUsers() {
-        return users.values();
+        return getUsers(EnumSet.allOf(UserField.class));
     }
 
     @Override
-    public User addUser(User user) {
-        if (users.containsKey(user.getId())) {
+    public Collection<User> getUsers(Set<UserField> fields) {
+        return database.users.values().stream()
+                .map(user -> project(user, fields))
+                .collect(Collectors.toList());
+    }
+
+    // Явно переданный id сохраняется (так в память попадают пользователи, уже записанные в БД)
+    @Override
+    public synchronized User addUser(User user) {
+        if (database.users.containsKey(user.getId())) {
             throw new RedoCreationException("User already exists");
         }
-        if (user.getId() == 0) {
-            generateId();
-            user.setId(id);
+        long userId = user.getId() == 0 ? database.nextUserId() : user.getId();
+        database.putUser(copy(user, userId, user.getVersion() == null ? 0 : user.getVersion()));
+        return getUserById(userId);
+    }
+
+    @Override
+    public synchronized User updateUser(User user) {
+        User old = database.users.get(user.getId());
+        if (old == null) {
+            throw new ObjectNotFoundException(String.format("User with id %s not found", user.getId()));
+        }
+        if (user.getVersion() != null && !user.getVersion().equals(old.getVersion())) {
+            throw new VersionConflictException(String.format("User with id %s was modified, version %s is outdated",
+                    user.getId(), user.getVersion()));
+        }
+        database.putUser(copy(user, user.getId(), old.getVersion() + 1));
+        return getUserById(user.getId());
+    }
+
+    @Override
+    public User getUserById(long userId) {
+        return getUserById(userId, EnumSet.allOf(UserField.class));
+    }
+
+    @Override
+    public User getUserById(long userId, Set<UserField> fields) {
+        User user = database.users.get(userId);
+        if (user == null) {
+            throw new ObjectNotFoundException(String.format("User with id %s not found", userId));
         }
-        users.put(user.getId(), user);
-        return user;
+        return project(user, fields);
     }
 
     @Override
-    public User updateUser(User user) {
-        userExistenceCheck(user.getId());
-        users.put(user.getId(), user);
-        return user;
+    public List<User> getUsersByIds(List<Long> userIds, Set<UserField> fields) {
+        return userIds.stream()
+                .map(database.users::get)
+                .filter(Objects::nonNull)
+                .map(user -> project(user, fields))
+                .collect(Collectors.toList());
     }
 
     @Override
-    public User getUserById(long id) {
-        userExistenceCheck(id);
-        return users.get(id);
+    public Set<Long> getExistingUserIds(Collection<Long> userIds) {
+        return userIds.stream()
+                .filter(database.users::containsKey)
+                .collect(Collectors.toSet());
     }
 
-    private void generateId() {
-        id++;
+    private User copy(User user, long userId, long version) {
+        return User.builder()
+                .id(userId)
+                .email(user.getEmail())
+                .login(user.getLogin())
+                .name(user.getName())
+                .birthday(user.getBirthday())
+                .version(version)
+                .build();
     }
 
-    private void userExistenceCheck(long id) {
-        if (!users.containsKey(id)) {
-            throw new ObjectNotFoundException(String.format("User with id %s not found", id));
+    private User project(User row, Set<UserField> fields) {
+        User.UserBuilder user = User.builder()
+                .id(row.getId())
+                .version(row.getVersion());
+        if (fields.contains(UserField.EMAIL)) {
+            user.email(row.getEmail());
+        }
+        if (fields.contains(UserField.LOGIN)) {
+            user.login(row.getLogin());
+        }
+        if (fields.contains(UserField.NAME)) {
+            user.name(row.getName());
+        }
+        if (fields.contains(UserField.BIRTHDAY)) {
+            user.birthday(row.getBirthday());
+        }
+        if (fields.contains(UserField.FRIENDS)) {
+            user.friends(new ArrayList<>(database.friends.getOrDefault(row.getId(),
+                    Collections.emptyNavigableSet())));
         }
+        return user.build();
     }
 }
@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.Likes;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.dal.LikesStorage;
+import ru.yandex.practicum.filmorate.util.CountMinSketch;
+import ru.yandex.practicum.filmorate.util.SpaceSaving;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Приближенный режим популярности (filmorate.popularity.mode=approximate): лучшие фильмы выбираются из
+// кандидатов space-saving и ранжируются по оценкам count-min sketch. Лайки по-прежнему пишутся в хранилище режима,
+// а если кандидатов меньше запрошенного count, запрос отдается точному подсчету
+@Component
+@Primary
+@ConditionalOnProperty(name = "filmorate.popularity.mode", havingValue = "approximate")
+@Slf4j
+public class ApproximateLikesStorage implements LikesStorage {
+    private final LikesStorage exactStorage;
+    private final CountMinSketch sketch;
+    private final SpaceSaving heavyHitters;
+
+    public ApproximateLikesStorage(LikesStorage exactStorage,
+                                   @Value("${filmorate.popularity.epsilon:0.0001}") double epsilon,
+                                   @Value("${filmorate.popularity.delta:0.001}") double delta,
+                                   @Value("${filmorate.popularity.heavy-hitters:1000}") int heavyHitters) {
+        this.exactStorage = exactStorage;
+        this.sketch = new CountMinSketch(epsilon, delta);
+        this.heavyHitters = new SpaceSaving(heavyHitters);
+        log.info("Approximate popularity: count-min sketch {}x{}, {} heavy hitters",
+                sketch.getDepth(), sketch.getWidth(), heavyHitters);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        exactStorage.getAllLikes().forEach(like -> record(like.getFilmId()));
+        log.info("Approximate popularity loaded: {} likes", sketch.getTotal());
+    }
+
+    @Override
+    public boolean addLike(long filmId, long userId) {
+        boolean addition = exactStorage.addLike(filmId, userId);
+        if (addition) {
+            record(filmId);
+        }
+        return addition;
+    }
+
+    @Override
+    public boolean unlike(long filmId, long userId) {
+        boolean removal = exactStorage.unlike(filmId, userId);
+        if (removal) {
+            sketch.add(filmId, -1);
+            heavyHitters.remove(filmId);
+        }
+        return removal;
+    }
+
+    @Override
+    public boolean[] applyLikes(List<LikeBatchItem> items) {
+        boolean[] applied = exactStorage.applyLikes(items);
+        for (int i = 0; i < items.size(); i++) {
+            if (!applied[i]) {
+                continue;
+            }
+            long filmId = items.get(i).getFilmId();
+            if (items.get(i).getOperation() == Operation.ADD) {
+                record(filmId);
+            } else {
+                sketch.add(filmId, -1);
+                heavyHitters.remove(filmId);
+            }
+        }
+        return applied;
+    }
+
+    @Override
+    public List<Long> getListOfLikes(long filmId) {
+        return exactStorage.getListOfLikes(filmId);
+    }
+
+    @Override
+    public List<Long> getListOfLikes(long filmId, long afterUserId, int limit) {
+        return exactStorage.getListOfLikes(filmId, afterUserId, limit);
+    }
+
+    @Override
+    public List<Long> getTheBestFilms(int count) {
+        List<Long> candidates = heavyHitters.keys();
+        if (candidates.size() < count) {
+            log.debug("Only {} heavy hitters tracked for count {}, falling back to exact counting",
+                    candidates.size(), count);
+            return exactStorage.getTheBestFilms(count);
+        }
+        return candidates.stream()
+                .sorted(Comparator.comparingInt((Long filmId) -> -sketch.estimate(filmId))
+                        .thenComparingLong(filmId -> filmId))
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Likes> getAllLikes() {
+        return exactStorage.getAllLikes();
+    }
+
+    @Override
+    public List<Likes> getLikesSince(LocalDateTime from) {
+        return exactStorage.getLikesSince(from);
+    }
+
+    @Override
+    public List<Likes> getLikes(List<LikeBatchItem> items) {
+        return exactStorage.getLikes(items);
+    }
+
+    private void record(long filmId) {
+        sketch.add(filmId, 1);
+        heavyHitters.add(filmId);
+    }
+}
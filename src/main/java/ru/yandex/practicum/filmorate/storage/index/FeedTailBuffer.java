@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.dal.EventStorage;
+
+import java.util.*;
+
+// Хвост ленты событий в памяти: последние tail-size событий для tail-users недавно активных пользователей.
+// Для каждого хвоста известен курсор coveredAfter, начиная с которого в нем лежат все события пользователя;
+// чтения от более раннего курсора и чтения вытесненных пользователей уходят в БД
+@Component
+@Slf4j
+public class FeedTailBuffer {
+    private static final int LOCK_STRIPES = 64;
+
+    private final EventStorage eventStorage;
+    private final int tailSize;
+    private final int maxUsers;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Map<Long, Tail> tails = new LinkedHashMap<>(16, 0.75f, true);
+    // Для пользователей без хвоста: все их события с большим id есть в буфере (то есть их нет вовсе)
+    private long absentCoveredAfter = Long.MAX_VALUE;
+
+    public FeedTailBuffer(EventStorage eventStorage,
+                          @Value("${filmorate.feed.tail-size:50}") int tailSize,
+                          @Value("${filmorate.feed.tail-users:10000}") int maxUsers) {
+        this.eventStorage = eventStorage;
+        this.tailSize = tailSize;
+        this.maxUsers = maxUsers;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long lastEventId = eventStorage.getLastEventId();
+        synchronized (tails) {
+            tails.clear();
+            absentCoveredAfter = lastEventId;
+        }
+        log.info("Feed tail buffer started after event {}", lastEventId);
+    }
+
+    // Запись в журнал и в хвост идет под блокировкой пользователя, чтобы чтение из буфера
+    // не увидело более позднее событие раньше уже сохраненного более раннего
+    public Event append(Event event) {
+        if (event.getUserId() == null) {
+            return eventStorage.addEvent(event);
+        }
+        long userId = event.getUserId();
+        synchronized (lockFor(userId)) {
+            Event stored = eventStorage.addEvent(event);
+            synchronized (tails) {
+                Tail tail = tails.get(userId);
+                if (tail == null) {
+                    tail = new Tail(absentCoveredAfter);
+                    tails.put(userId, tail);
+                    evictEldest();
+                }
+                tail.add(stored, tailSize);
+            }
+            return stored;
+        }
+    }
+
+    public List<Event> getFeed(long userId, long afterEventId, int limit) {
+        synchronized (lockFor(userId)) {
+            synchronized (tails) {
+                Tail tail = tails.get(userId);
+                long coveredAfter = tail == null ? absentCoveredAfter : tail.coveredAfter;
+                if (afterEventId >= coveredAfter) {
+                    return tail == null ? List.of() : tail.after(afterEventId, limit);
+                }
+            }
+        }
+        return eventStorage.getFeed(userId, afterEventId, limit);
+    }
+
+    private void evictEldest() {
+        if (tails.size() <= maxUsers) {
+            return;
+        }
+        Iterator<Tail> eldest = tails.values().iterator();
+        Tail evicted = eldest.next();
+        eldest.remove();
+        absentCoveredAfter = Math.max(absentCoveredAfter, evicted.lastEventId());
+    }
+
+    private Object lockFor(long userId) {
+        return locks[(int) (userId & (LOCK_STRIPES - 1))];
+    }
+
+    private static final class Tail {
+        final ArrayDeque<Event> events = new ArrayDeque<>();
+        long coveredAfter;
+
+        Tail(long coveredAfter) {
+            this.coveredAfter = coveredAfter;
+        }
+
+        void add(Event event, int tailSize) {
+            events.addLast(event);
+            if (events.size() > tailSize) {
+                coveredAfter = events.removeFirst().getEventId();
+            }
+        }
+
+        long lastEventId() {
+            return events.isEmpty() ? coveredAfter : events.getLast().getEventId();
+        }
+
+        List<Event> after(long afterEventId, int limit) {
+            if (limit <= 0) {
+                return Collections.emptyList();
+            }
+            List<Event> page = new ArrayList<>(Math.min(limit, events.size()));
+            for (Event event : events) {
+                if (page.size() == limit) {
+                    break;
+                }
+                if (event.getEventId() > afterEventId) {
+                    page.add(event);
+                }
+            }
+            return page;
+        }
+    }
+}
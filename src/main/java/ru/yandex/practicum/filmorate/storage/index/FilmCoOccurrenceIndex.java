@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Likes;
+import ru.yandex.practicum.filmorate.storage.dal.LikesStorage;
+import ru.yandex.practicum.filmorate.util.LongIntHashMap;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Матрица совместных лайков "кто лайкнул X, лайкнул и Y", обновляется инкрементально на addLike/unlike
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FilmCoOccurrenceIndex {
+    private static final long[] NO_FILMS = new long[0];
+
+    private final LikesStorage likesStorage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, long[]> filmsByUser = new HashMap<>();
+    private final Map<Long, LongIntHashMap> coLikes = new HashMap<>();
+    private final LongIntHashMap likesCount = new LongIntHashMap();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<Likes> likes = likesStorage.getAllLikes();
+        lock.writeLock().lock();
+        try {
+            filmsByUser.clear();
+            coLikes.clear();
+            likesCount.clear();
+            likes.forEach(like -> addLikeInternal(like.getFilmId(), like.getUserId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Co-occurrence index loaded: {} likes, {} films", likes.size(), likesCount.size());
+    }
+
+    public void addLike(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            addLikeInternal(filmId, userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void unlike(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            long[] films = filmsByUser.getOrDefault(userId, NO_FILMS);
+            int position = Arrays.binarySearch(films, filmId);
+            if (position < 0) {
+                return;
+            }
+            long[] rest = new long[films.length - 1];
+            System.arraycopy(films, 0, rest, 0, position);
+            System.arraycopy(films, position + 1, rest, position, rest.length - position);
+            if (rest.length == 0) {
+                filmsByUser.remove(userId);
+            } else {
+                filmsByUser.put(userId, rest);
+            }
+            for (long other : rest) {
+                decrement(filmId, other);
+                decrement(other, filmId);
+            }
+            likesCount.addTo(filmId, -1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getLikesCount(long filmId) {
+        lock.readLock().lock();
+        try {
+            return likesCount.get(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Фильмы, чаще всего встречающиеся рядом с лайками пользователя; уже лайкнутые исключаются
+    public List<Long> recommend(long userId, int count) {
+        lock.readLock().lock();
+        try {
+            long[] liked = filmsByUser.getOrDefault(userId, NO_FILMS);
+            LongIntHashMap scores = new LongIntHashMap();
+            for (long filmId : liked) {
+                LongIntHashMap row = coLikes.get(filmId);
+                if (row != null) {
+                    row.forEach((other, together) -> {
+                        if (Arrays.binarySearch(liked, other) < 0) {
+                            scores.addTo(other, together);
+                        }
+                    });
+                }
+            }
+            return top(scores, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Long> top(LongIntHashMap scores, int count) {
+        Comparator<long[]> order = Comparator.<long[]>comparingLong(entry -> entry[1])
+                .thenComparingLong(entry -> likesCount.get(entry[0]))
+                .thenComparingLong(entry -> -entry[0]);
+        PriorityQueue<long[]> best = new PriorityQueue<>(order);
+        scores.forEach((filmId, score) -> {
+            best.offer(new long[]{filmId, score});
+            if (best.size() > count) {
+                best.poll();
+            }
+        });
+        List<Long> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll()[0]);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private void addLikeInternal(long filmId, long userId) {
+        long[] films = filmsByUser.getOrDefault(userId, NO_FILMS);
+        int position = Arrays.binarySearch(films, filmId);
+        if (position >= 0) {
+            return;
+        }
+        int insertion = -position - 1;
+        long[] updated = new long[films.length + 1];
+        System.arraycopy(films, 0, updated, 0, insertion);
+        updated[insertion] = filmId;
+        System.arraycopy(films, insertion, updated, insertion + 1, films.length - insertion);
+        filmsByUser.put(userId, updated);
+        for (long other : films) {
+            coLikes.computeIfAbsent(filmId, id -> new LongIntHashMap()).addTo(other, 1);
+            coLikes.computeIfAbsent(other, id -> new LongIntHashMap()).addTo(filmId, 1);
+        }
+        likesCount.addTo(filmId, 1);
+    }
+
+    private void decrement(long filmId, long other) {
+        LongIntHashMap row = coLikes.get(filmId);
+        if (row != null && row.addTo(other, -1) == 0 && row.isEmpty()) {
+            coLikes.remove(filmId);
+        }
+    }
+}
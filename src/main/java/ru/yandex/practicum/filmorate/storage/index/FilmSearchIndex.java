@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.storage.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.util.LongIntHashMap;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongToIntFunction;
+
+// Инвертированный индекс по названию и описанию фильмов: токен -> (id фильма -> вес)
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FilmSearchIndex {
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final FilmStorage filmStorage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, LongIntHashMap> postings = new HashMap<>();
+    private final Map<Long, Set<String>> tokensByFilm = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Collection<Film> films = filmStorage.getFilms(EnumSet.of(FilmField.NAME, FilmField.DESCRIPTION));
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            tokensByFilm.clear();
+            films.forEach(this::indexInternal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Search index loaded: {} films, {} tokens", films.size(), postings.size());
+    }
+
+    // Добавляет фильм или переиндексирует его после обновления
+    public void index(Film film) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(film.getId());
+            indexInternal(film);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Фильмы, содержащие хотя бы один токен запроса. Порядок: число совпавших токенов, суммарный вес,
+    // затем количество лайков. Стоимость зависит от длины списков токенов, а не от размера каталога
+    public List<Long> search(String query, int count, LongToIntFunction likesCount) {
+        Set<String> queryTokens = new LinkedHashSet<>(tokenize(query));
+        lock.readLock().lock();
+        try {
+            LongIntHashMap matched = new LongIntHashMap();
+            LongIntHashMap weights = new LongIntHashMap();
+            for (String token : queryTokens) {
+                LongIntHashMap films = postings.get(token);
+                if (films != null) {
+                    films.forEach((filmId, weight) -> {
+                        matched.addTo(filmId, 1);
+                        weights.addTo(filmId, weight);
+                    });
+                }
+            }
+            Comparator<long[]> order = Comparator.<long[]>comparingLong(entry -> entry[1])
+                    .thenComparingLong(entry -> entry[2])
+                    .thenComparingLong(entry -> entry[3])
+                    .thenComparingLong(entry -> -entry[0]);
+            PriorityQueue<long[]> best = new PriorityQueue<>(order);
+            matched.forEach((filmId, tokens) -> {
+                best.offer(new long[]{filmId, tokens, weights.get(filmId), likesCount.applyAsInt(filmId)});
+                if (best.size() > count) {
+                    best.poll();
+                }
+            });
+            List<Long> result = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                result.add(best.poll()[0]);
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Слова из букв и цифр любого алфавита в нижнем регистре; "ё" приводится к "е"
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                char lower = Character.toLowerCase(c);
+                token.append(lower == 'ё' ? 'е' : lower);
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private void indexInternal(Film film) {
+        Map<String, Integer> weights = new HashMap<>();
+        tokenize(film.getName()).forEach(token -> weights.merge(token, NAME_WEIGHT, Integer::sum));
+        tokenize(film.getDescription()).forEach(token -> weights.merge(token, DESCRIPTION_WEIGHT, Integer::sum));
+        weights.forEach((token, weight) ->
+                postings.computeIfAbsent(token, key -> new LongIntHashMap()).put(film.getId(), weight));
+        tokensByFilm.put(film.getId(), weights.keySet());
+    }
+
+    private void removeInternal(long filmId) {
+        Set<String> tokens = tokensByFilm.remove(filmId);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            LongIntHashMap films = postings.get(token);
+            films.remove(filmId);
+            if (films.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.Friends;
+import ru.yandex.practicum.filmorate.model.MutualFriends;
+import ru.yandex.practicum.filmorate.storage.dal.FriendsStorage;
+import ru.yandex.practicum.filmorate.util.LongIntHashMap;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Граф дружбы в памяти: пользователи пронумерованы плотными int-индексами, списки смежности — массивы int
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FriendsGraphIndex {
+    private static final int LEAF_SIZE = 64;
+    private static final int NOT_MET = -1;
+    private static final int TIMED_OUT = -2;
+
+    private final FriendsStorage friendsStorage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private final LongIntHashMap nodeByUser = new LongIntHashMap(); // id пользователя -> индекс + 1
+    private long[] userByNode = new long[16];
+    private int[][] outgoing = new int[16][];
+    private int[] outgoingSize = new int[16];
+    private int[][] incoming = new int[16][];
+    private int[] incomingSize = new int[16];
+    private int nodes;
+
+    @Value("${filmorate.friends.suggestions.time-budget-ms:100}")
+    private long timeBudgetMs;
+    @Value("${filmorate.friends.suggestions.max-friends:10000}")
+    private int maxFriends;
+    @Value("${filmorate.friends.suggestions.max-fanout:10000}")
+    private int maxFanout;
+    @Value("${filmorate.friends.suggestions.parallel-threshold:256}")
+    private int parallelThreshold;
+
+    @Value("${filmorate.friends.path.max-depth:6}")
+    private int maxPathDepth;
+    @Value("${filmorate.friends.path.time-budget-ms:100}")
+    private long pathTimeBudgetMs;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<Friends> friends = friendsStorage.getAllFriends();
+        lock.writeLock().lock();
+        try {
+            nodeByUser.clear();
+            nodes = 0;
+            friends.forEach(edge -> addEdge(edge.getUserId(), edge.getFriendId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Friends graph loaded: {} users, {} edges", nodes, friends.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public void addFriend(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            addEdge(userId, friendId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            int from = nodeByUser.get(userId) - 1;
+            int to = nodeByUser.get(friendId) - 1;
+            if (from >= 0 && to >= 0 && removeValue(outgoing, outgoingSize, from, to)) {
+                removeValue(incoming, incomingSize, to, from);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Друзья друзей, ранжированные по числу общих друзей. У пользователей-"хабов" обход усекается
+    // по числу просматриваемых друзей, их друзей и по бюджету времени — возвращается лучшее найденное
+    public List<Long> suggest(long userId, int count) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+        lock.readLock().lock();
+        try {
+            int source = nodeByUser.get(userId) - 1;
+            if (source < 0) {
+                return new ArrayList<>();
+            }
+            int[] friends = outgoing[source];
+            BitSet excluded = new BitSet(nodes);
+            excluded.set(source);
+            for (int i = 0; i < outgoingSize[source]; i++) {
+                excluded.set(friends[i]);
+            }
+            int scanned = Math.min(outgoingSize[source], maxFriends);
+            if (scanned < outgoingSize[source]) {
+                log.debug("Friend suggestions for user {} truncated to {} of {} friends",
+                        userId, scanned, outgoingSize[source]);
+            }
+            LongIntHashMap mutual = scanned >= parallelThreshold
+                    ? pool.invoke(new MutualFriendsTask(friends, 0, scanned, excluded, deadline))
+                    : countMutualFriends(friends, 0, scanned, excluded, deadline);
+            return top(mutual, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Общие друзья пользователя с каждым из кандидатов за один проход: друзья пользователя один раз
+    // складываются в битовую маску, и списки друзей кандидатов пересекаются с ней параллельно
+    public List<MutualFriends> countMutualFriends(long userId, Collection<Long> candidateIds, boolean withIds) {
+        lock.readLock().lock();
+        try {
+            int source = nodeByUser.get(userId) - 1;
+            BitSet friends = new BitSet(nodes);
+            if (source >= 0) {
+                for (int i = 0; i < outgoingSize[source]; i++) {
+                    friends.set(outgoing[source][i]);
+                }
+            }
+            Stream<Long> candidates = candidateIds.size() >= parallelThreshold
+                    ? candidateIds.parallelStream()
+                    : candidateIds.stream();
+            return candidates
+                    .distinct()
+                    .map(candidateId -> intersect(friends, candidateId, withIds))
+                    .sorted(Comparator.comparingInt(MutualFriends::getCount).reversed()
+                            .thenComparingLong(MutualFriends::getUserId))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private MutualFriends intersect(BitSet friends, long candidateId, boolean withIds) {
+        int candidate = nodeByUser.get(candidateId) - 1;
+        int count = 0;
+        List<Long> friendIds = withIds ? new ArrayList<>() : null;
+        if (candidate >= 0) {
+            int[] candidateFriends = outgoing[candidate];
+            for (int i = 0; i < outgoingSize[candidate]; i++) {
+                if (friends.get(candidateFriends[i])) {
+                    count++;
+                    if (withIds) {
+                        friendIds.add(userByNode[candidateFriends[i]]);
+                    }
+                }
+            }
+        }
+        if (withIds) {
+            Collections.sort(friendIds);
+        }
+        return MutualFriends.builder()
+                .userId(candidateId)
+                .count(count)
+                .friendIds(friendIds)
+                .build();
+    }
+
+    // Кратчайший путь по дружбе от userId к otherId (включая обоих) двунаправленным BFS: прямой поиск идет
+    // по исходящим ребрам, обратный - по входящим, каждый раз расширяется меньший фронт. Посещенные вершины -
+    // битовые маски, родители - только для посещенных. Пустой список - пути нет в пределах max-depth шагов
+    public List<Long> findPath(long userId, long otherId) {
+        if (userId == otherId) {
+            return List.of(userId);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pathTimeBudgetMs);
+        lock.readLock().lock();
+        try {
+            int source = nodeByUser.get(userId) - 1;
+            int target = nodeByUser.get(otherId) - 1;
+            if (source < 0 || target < 0) {
+                return new ArrayList<>();
+            }
+            Search forward = new Search(source, outgoing, outgoingSize);
+            Search backward = new Search(target, incoming, incomingSize);
+            for (int depth = 1; depth <= maxPathDepth; depth++) {
+                if (forward.frontierSize == 0 || backward.frontierSize == 0) {
+                    break;
+                }
+                boolean forwardSmaller = forward.frontierSize <= backward.frontierSize;
+                Search expanded = forwardSmaller ? forward : backward;
+                int meeting = expanded.expand(forwardSmaller ? backward : forward, deadline);
+                if (meeting == TIMED_OUT) {
+                    throw new ServiceUnavailableException(String.format(
+                            "Path search between users %s and %s exceeded the time budget", userId, otherId));
+                }
+                if (meeting >= 0) {
+                    List<Long> path = forward.pathTo(meeting);
+                    Collections.reverse(path);
+                    List<Long> rest = backward.pathTo(meeting);
+                    path.addAll(rest.subList(1, rest.size()));
+                    return path;
+                }
+            }
+            return new ArrayList<>();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private class Search {
+        private final int origin;
+        private final int[][] edges;
+        private final int[] edgesSize;
+        private final BitSet visited = new BitSet(nodes);
+        private final LongIntHashMap parents = new LongIntHashMap(); // вершина + 1 -> родитель + 1
+        private int[] frontier = new int[16];
+        private int frontierSize;
+
+        Search(int origin, int[][] edges, int[] edgesSize) {
+            this.origin = origin;
+            this.edges = edges;
+            this.edgesSize = edgesSize;
+            visited.set(origin);
+            frontier[frontierSize++] = origin;
+        }
+
+        // Расширяет фронт на один уровень. Первая встреченная вершина другого поиска дает кратчайший путь:
+        // все вершины ближе уже просмотрены без встречи
+        int expand(Search other, long deadline) {
+            int[] next = new int[Math.max(16, frontierSize)];
+            int nextSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                if (System.nanoTime() > deadline) {
+                    return TIMED_OUT;
+                }
+                int node = frontier[i];
+                int[] neighbours = edges[node];
+                for (int j = 0; j < edgesSize[node]; j++) {
+                    int neighbour = neighbours[j];
+                    if (visited.get(neighbour)) {
+                        continue;
+                    }
+                    visited.set(neighbour);
+                    parents.put(neighbour + 1, node + 1);
+                    if (other.visited.get(neighbour)) {
+                        return neighbour;
+                    }
+                    if (nextSize == next.length) {
+                        next = Arrays.copyOf(next, nextSize << 1);
+                    }
+                    next[nextSize++] = neighbour;
+                }
+            }
+            frontier = next;
+            frontierSize = nextSize;
+            return NOT_MET;
+        }
+
+        // Пользователи от вершины node обратно к началу поиска
+        List<Long> pathTo(int node) {
+            List<Long> path = new ArrayList<>();
+            for (int current = node; current != origin; current = parents.get(current + 1) - 1) {
+                path.add(userByNode[current]);
+            }
+            path.add(userByNode[origin]);
+            return path;
+        }
+    }
+
+    private LongIntHashMap countMutualFriends(int[] friends, int from, int to, BitSet excluded, long deadline) {
+        LongIntHashMap mutual = new LongIntHashMap();
+        for (int i = from; i < to && System.nanoTime() < deadline; i++) {
+            int friend = friends[i];
+            int[] candidates = outgoing[friend];
+            int fanout = Math.min(outgoingSize[friend], maxFanout);
+            for (int j = 0; j < fanout; j++) {
+                if (!excluded.get(candidates[j])) {
+                    mutual.addTo(candidates[j] + 1, 1);
+                }
+            }
+        }
+        return mutual;
+    }
+
+    private class MutualFriendsTask extends RecursiveTask<LongIntHashMap> {
+        private final int[] friends;
+        private final int from;
+        private final int to;
+        private final BitSet excluded;
+        private final long deadline;
+
+        MutualFriendsTask(int[] friends, int from, int to, BitSet excluded, long deadline) {
+            this.friends = friends;
+            this.from = from;
+            this.to = to;
+            this.excluded = excluded;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected LongIntHashMap compute() {
+            if (to - from <= LEAF_SIZE) {
+                return countMutualFriends(friends, from, to, excluded, deadline);
+            }
+            int middle = (from + to) >>> 1;
+            MutualFriendsTask left = new MutualFriendsTask(friends, from, middle, excluded, deadline);
+            left.fork();
+            LongIntHashMap right = new MutualFriendsTask(friends, middle, to, excluded, deadline).compute();
+            LongIntHashMap joined = left.join();
+            LongIntHashMap larger = joined.size() >= right.size() ? joined : right;
+            LongIntHashMap smaller = larger == joined ? right : joined;
+            smaller.forEach(larger::addTo);
+            return larger;
+        }
+    }
+
+    private List<Long> top(LongIntHashMap mutual, int count) {
+        Comparator<long[]> order = Comparator.<long[]>comparingLong(entry -> entry[1])
+                .thenComparingLong(entry -> -entry[0]);
+        PriorityQueue<long[]> best = new PriorityQueue<>(order);
+        mutual.forEach((node, together) -> {
+            best.offer(new long[]{userByNode[(int) node - 1], together});
+            if (best.size() > count) {
+                best.poll();
+            }
+        });
+        List<Long> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll()[0]);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private void addEdge(long userId, long friendId) {
+        int from = node(userId);
+        int to = node(friendId);
+        if (indexOf(outgoing, outgoingSize, from, to) < 0) {
+            append(outgoing, outgoingSize, from, to);
+            append(incoming, incomingSize, to, from);
+        }
+    }
+
+    private int node(long userId) {
+        int node = nodeByUser.get(userId) - 1;
+        if (node >= 0) {
+            return node;
+        }
+        if (nodes == userByNode.length) {
+            int capacity = nodes << 1;
+            userByNode = Arrays.copyOf(userByNode, capacity);
+            outgoing = Arrays.copyOf(outgoing, capacity);
+            outgoingSize = Arrays.copyOf(outgoingSize, capacity);
+            incoming = Arrays.copyOf(incoming, capacity);
+            incomingSize = Arrays.copyOf(incomingSize, capacity);
+        }
+        node = nodes++;
+        userByNode[node] = userId;
+        outgoing[node] = new int[4];
+        outgoingSize[node] = 0;
+        incoming[node] = new int[4];
+        incomingSize[node] = 0;
+        nodeByUser.put(userId, node + 1);
+        return node;
+    }
+
+    private static void append(int[][] lists, int[] sizes, int node, int value) {
+        if (sizes[node] == lists[node].length) {
+            lists[node] = Arrays.copyOf(lists[node], sizes[node] << 1);
+        }
+        lists[node][sizes[node]++] = value;
+    }
+
+    private static boolean removeValue(int[][] lists, int[] sizes, int node, int value) {
+        int position = indexOf(lists, sizes, node, value);
+        if (position < 0) {
+            return false;
+        }
+        lists[node][position] = lists[node][--sizes[node]];
+        return true;
+    }
+
+    private static int indexOf(int[][] lists, int[] sizes, int node, int value) {
+        int[] list = lists[node];
+        for (int i = 0; i < sizes[node]; i++) {
+            if (list[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.dal.LikesStorage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Готовый список популярных фильмов размером с наибольший запрошенный count. Меньшие count отдаются срезом,
+// а сам список пересчитывается планировщиком раньше, чем устареет, так что запрос не ждет агрегации.
+// Синхронно пересчитывается только при запросе большего count или если снимок старше max-staleness
+@Component
+@Slf4j
+public class PopularFilmsSnapshot {
+    private final LikesStorage likesStorage;
+    private final FilmStorage filmStorage;
+    private final long maxStalenessNanos;
+    private final int maxSize;
+    private final AtomicInteger largestRequested;
+    private volatile Snapshot snapshot;
+
+    public PopularFilmsSnapshot(LikesStorage likesStorage, FilmStorage filmStorage,
+                                @Value("${filmorate.popular.max-staleness-ms:15000}") long maxStalenessMillis,
+                                @Value("${filmorate.popular.initial-size:10}") int initialSize,
+                                @Value("${filmorate.popular.max-size:1000}") int maxSize) {
+        this.likesStorage = likesStorage;
+        this.filmStorage = filmStorage;
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+        this.maxSize = maxSize;
+        this.largestRequested = new AtomicInteger(Math.min(initialSize, maxSize));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        refresh();
+    }
+
+    // Больше max-size фильмов снимок не хранит: такие запросы считаются напрямую
+    public List<Film> getTheBestFilms(int count) {
+        if (count > maxSize) {
+            return filmStorage.getFilmsByIds(likesStorage.getTheBestFilms(count));
+        }
+        Snapshot current = snapshot;
+        if (current == null || !current.covers(count) || current.isOlderThan(maxStalenessNanos)) {
+            largestRequested.accumulateAndGet(count, Math::max);
+            current = refreshIfNeeded(count);
+        }
+        return current.films.subList(0, Math.min(count, current.films.size()));
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.popular.refresh-interval-ms:5000}",
+            initialDelayString = "${filmorate.popular.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        int size = largestRequested.get();
+        List<Film> films = filmStorage.getFilmsByIds(likesStorage.getTheBestFilms(size));
+        snapshot = new Snapshot(Collections.unmodifiableList(films), size, System.nanoTime());
+        log.debug("Popular films snapshot refreshed: {} films", films.size());
+    }
+
+    // Пока один поток пересчитывает снимок, остальные ждут и берут его результат, а не считают повторно
+    private synchronized Snapshot refreshIfNeeded(int count) {
+        Snapshot current = snapshot;
+        if (current == null || !current.covers(count) || current.isOlderThan(maxStalenessNanos)) {
+            refresh();
+        }
+        return snapshot;
+    }
+
+    private static final class Snapshot {
+        final List<Film> films;
+        final int size;
+        final long computedAt;
+
+        Snapshot(List<Film> films, int size, long computedAt) {
+            this.films = films;
+            this.size = size;
+            this.computedAt = computedAt;
+        }
+
+        // Фильмов меньше запрошенного размера - значит, в снимке уже все фильмы
+        boolean covers(int count) {
+            return count <= size || films.size() < size;
+        }
+
+        boolean isOlderThan(long nanos) {
+            return System.nanoTime() - computedAt > nanos;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.dal.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Рейтинги популярности по жанрам и годам выпуска, отсортированные по числу лайков.
+// Поддерживаются инкрементально из изменений лайков и жанров фильма
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PopularityLeaderboards {
+    private static final Comparator<Entry> BY_LIKES = Comparator.<Entry>comparingInt(entry -> -entry.likes)
+            .thenComparingLong(entry -> entry.filmId);
+
+    private final FilmStorage filmStorage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byYear = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Collection<Film> films = filmStorage.getFilms(
+                EnumSet.of(FilmField.RELEASE_DATE, FilmField.GENRES, FilmField.LIKES_COUNT));
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            byGenre.clear();
+            byYear.clear();
+            films.forEach(film -> put(entryOf(film,
+                    film.getLikesCount() == null ? 0 : film.getLikesCount().intValue())));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Popularity leaderboards loaded: {} films, {} genres, {} years",
+                films.size(), byGenre.size(), byYear.size());
+    }
+
+    // Добавляет фильм или переносит его между рейтингами после смены жанров и даты выпуска
+    public void updateFilm(Film film) {
+        lock.writeLock().lock();
+        try {
+            Entry old = remove(film.getId());
+            put(entryOf(film, old == null ? 0 : old.likes));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addLike(long filmId) {
+        changeLikes(filmId, 1);
+    }
+
+    public void unlike(long filmId) {
+        changeLikes(filmId, -1);
+    }
+
+    // Первые count фильмов жанра и/или года. При обоих фильтрах обходится меньший из двух рейтингов
+    public List<Long> getTheBestFilms(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> genreBoard = genreId == null ? null : byGenre.getOrDefault(genreId, emptyBoard());
+            NavigableSet<Entry> yearBoard = year == null ? null : byYear.getOrDefault(year, emptyBoard());
+            NavigableSet<Entry> board;
+            if (genreBoard == null) {
+                board = yearBoard;
+            } else if (yearBoard == null) {
+                board = genreBoard;
+            } else {
+                board = genreBoard.size() <= yearBoard.size() ? genreBoard : yearBoard;
+            }
+            List<Long> result = new ArrayList<>(Math.min(count, board.size()));
+            for (Entry entry : board) {
+                if (result.size() == count) {
+                    break;
+                }
+                if ((year == null || entry.year == year) && (genreId == null || entry.hasGenre(genreId))) {
+                    result.add(entry.filmId);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void changeLikes(long filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            Entry old = remove(filmId);
+            if (old != null) {
+                put(new Entry(filmId, Math.max(0, old.likes + delta), old.year, old.genres));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(Entry entry) {
+        entries.put(entry.filmId, entry);
+        for (int genreId : entry.genres) {
+            byGenre.computeIfAbsent(genreId, id -> new TreeSet<>(BY_LIKES)).add(entry);
+        }
+        if (entry.year != Entry.NO_YEAR) {
+            byYear.computeIfAbsent(entry.year, id -> new TreeSet<>(BY_LIKES)).add(entry);
+        }
+    }
+
+    private Entry remove(long filmId) {
+        Entry entry = entries.remove(filmId);
+        if (entry == null) {
+            return null;
+        }
+        for (int genreId : entry.genres) {
+            removeFromBoard(byGenre, genreId, entry);
+        }
+        if (entry.year != Entry.NO_YEAR) {
+            removeFromBoard(byYear, entry.year, entry);
+        }
+        return entry;
+    }
+
+    private static void removeFromBoard(Map<Integer, NavigableSet<Entry>> boards, int key, Entry entry) {
+        NavigableSet<Entry> board = boards.get(key);
+        board.remove(entry);
+        if (board.isEmpty()) {
+            boards.remove(key);
+        }
+    }
+
+    private static Entry entryOf(Film film, int likes) {
+        int[] genres = film.getGenres() == null ? new int[0] : film.getGenres().stream()
+                .mapToInt(Genre::getId)
+                .distinct()
+                .toArray();
+        int year = film.getReleaseDate() == null ? Entry.NO_YEAR : film.getReleaseDate().getYear();
+        return new Entry(film.getId(), likes, year, genres);
+    }
+
+    private static NavigableSet<Entry> emptyBoard() {
+        return Collections.emptyNavigableSet();
+    }
+
+    private static final class Entry {
+        static final int NO_YEAR = Integer.MIN_VALUE;
+
+        final long filmId;
+        final int likes;
+        final int year;
+        final int[] genres;
+
+        Entry(long filmId, int likes, int year, int[] genres) {
+            this.filmId = filmId;
+            this.likes = likes;
+            this.year = year;
+            this.genres = genres;
+        }
+
+        boolean hasGenre(int genreId) {
+            for (int genre : genres) {
+                if (genre == genreId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
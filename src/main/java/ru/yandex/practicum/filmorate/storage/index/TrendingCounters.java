@@ -0,0 +1,298 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.DomainEvent;
+import ru.yandex.practicum.filmorate.event.LikeAdded;
+import ru.yandex.practicum.filmorate.event.LikeRemoved;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Likes;
+import ru.yandex.practicum.filmorate.storage.dal.LikesStorage;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Счетчики лайков за скользящие окна 1ч/24ч/7д на кольцевых буферах корзин. Для каждого окна
+// поддерживается отсортированный рейтинг, поэтому чтение первых K фильмов стоит O(K)
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TrendingCounters {
+    private static final long FINE_BUCKET_MILLIS = Duration.ofMinutes(5).toMillis();
+    private static final int FINE_BUCKETS = 12;
+    private static final long COARSE_BUCKET_MILLIS = Duration.ofHours(1).toMillis();
+    private static final int COARSE_BUCKETS = 168;
+    private static final int DAY_BUCKETS = 24;
+
+    private final LikesStorage likesStorage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Counter> counters = new HashMap<>();
+    private final Map<Window, NavigableSet<Score>> rankings = new EnumMap<>(Window.class);
+    private long fineHead;
+    private long coarseHead;
+
+    public enum Window {
+        HOUR("1h"), DAY("24h"), WEEK("7d");
+
+        private final String value;
+
+        Window(String value) {
+            this.value = value;
+        }
+
+        public static Window fromString(String value) {
+            for (Window window : values()) {
+                if (window.value.equals(value)) {
+                    return window;
+                }
+            }
+            throw new ValidationException(String.format("Unknown trending window %s, expected 1h, 24h or 7d", value));
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Instant now = Instant.now();
+        LocalDateTime weekAgo = LocalDateTime.ofInstant(now.minus(Duration.ofDays(7)), ZoneId.systemDefault());
+        List<Likes> likes = likesStorage.getLikesSince(weekAgo);
+        lock.writeLock().lock();
+        try {
+            counters.clear();
+            rankings.clear();
+            likes.forEach(like -> record(like.getFilmId(), like.getCreatedAt().atZone(ZoneId.systemDefault())
+                    .toInstant()));
+            advanceAll(now);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Trending counters loaded: {} likes in the last 7 days, {} films", likes.size(), counters.size());
+    }
+
+    public void addLike(long filmId, Instant at) {
+        lock.writeLock().lock();
+        try {
+            record(filmId, at);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Снятый лайк вычитается из корзины, в которую он был записан при постановке
+    public void unlike(long filmId, Instant likedAt) {
+        lock.writeLock().lock();
+        try {
+            remove(filmId, likedAt);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Пакет лайков и их снятий из шины событий применяется по порядку за одно взятие блокировки
+    public void apply(List<DomainEvent> events) {
+        lock.writeLock().lock();
+        try {
+            for (DomainEvent event : events) {
+                if (event instanceof LikeAdded) {
+                    LikeAdded like = (LikeAdded) event;
+                    record(like.getFilmId(), like.getAt());
+                } else if (event instanceof LikeRemoved) {
+                    LikeRemoved unlike = (LikeRemoved) event;
+                    if (unlike.getLikedAt() != null) {
+                        remove(unlike.getFilmId(), unlike.getLikedAt());
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Истекшие корзины вычитаются раз в минуту по счетчикам в памяти, без повторного чтения таблицы LIKES
+    @Scheduled(fixedRate = 60_000)
+    public void advance() {
+        advance(Instant.now());
+    }
+
+    public void advance(Instant now) {
+        lock.writeLock().lock();
+        try {
+            advanceAll(now);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Long> getTrending(Window window, int count) {
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            NavigableSet<Score> ranking = rankings.getOrDefault(window, Collections.emptyNavigableSet());
+            List<Long> result = new ArrayList<>(Math.min(count, ranking.size()));
+            for (Score score : ranking) {
+                if (result.size() == count) {
+                    break;
+                }
+                result.add(score.filmId);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Все кольца выравниваются по самой поздней известной корзине, поэтому лайк "из прошлого"
+    // попадает в свою корзину и учитывается только в тех окнах, которые его еще покрывают
+    private void record(long filmId, Instant at) {
+        long fineBucket = at.toEpochMilli() / FINE_BUCKET_MILLIS;
+        long coarseBucket = at.toEpochMilli() / COARSE_BUCKET_MILLIS;
+        fineHead = Math.max(fineHead, fineBucket);
+        coarseHead = Math.max(coarseHead, coarseBucket);
+        Counter counter = counters.computeIfAbsent(filmId, id -> new Counter(id, fineHead, coarseHead));
+        unrank(counter);
+        counter.advance(fineHead, coarseHead);
+        counter.add(fineBucket, coarseBucket, 1);
+        rank(counter);
+    }
+
+    // Лайк, выпавший из всех окон (или не попавший в счетчики), уже не учитывается и не вычитается
+    private void remove(long filmId, Instant likedAt) {
+        Counter counter = counters.get(filmId);
+        if (counter == null) {
+            return;
+        }
+        unrank(counter);
+        counter.advance(fineHead, coarseHead);
+        counter.add(likedAt.toEpochMilli() / FINE_BUCKET_MILLIS, likedAt.toEpochMilli() / COARSE_BUCKET_MILLIS, -1);
+        rank(counter);
+    }
+
+    private void advanceAll(Instant now) {
+        fineHead = now.toEpochMilli() / FINE_BUCKET_MILLIS;
+        coarseHead = now.toEpochMilli() / COARSE_BUCKET_MILLIS;
+        Iterator<Counter> iterator = counters.values().iterator();
+        while (iterator.hasNext()) {
+            Counter counter = iterator.next();
+            unrank(counter);
+            counter.advance(fineHead, coarseHead);
+            if (counter.week == 0) {
+                iterator.remove();
+            } else {
+                rank(counter);
+            }
+        }
+    }
+
+    private void rank(Counter counter) {
+        for (Window window : Window.values()) {
+            int total = counter.total(window);
+            if (total > 0) {
+                rankings.computeIfAbsent(window, key -> new TreeSet<>()).add(new Score(counter.filmId, total));
+            }
+        }
+    }
+
+    private void unrank(Counter counter) {
+        for (Window window : Window.values()) {
+            int total = counter.total(window);
+            NavigableSet<Score> ranking = rankings.get(window);
+            if (total > 0 && ranking != null) {
+                ranking.remove(new Score(counter.filmId, total));
+            }
+        }
+    }
+
+    private static final class Counter {
+        final long filmId;
+        final int[] fine = new int[FINE_BUCKETS];
+        final int[] coarse = new int[COARSE_BUCKETS];
+        long fineHead;
+        long coarseHead;
+        int hour;
+        int day;
+        int week;
+
+        Counter(long filmId, long fineHead, long coarseHead) {
+            this.filmId = filmId;
+            this.fineHead = fineHead;
+            this.coarseHead = coarseHead;
+        }
+
+        int total(Window window) {
+            switch (window) {
+                case HOUR:
+                    return hour;
+                case DAY:
+                    return day;
+                default:
+                    return week;
+            }
+        }
+
+        // Сдвигает головы колец вперед, вычитая из сумм окон выпавшие корзины
+        void advance(long fineBucket, long coarseBucket) {
+            for (long next = fineHead + 1; next <= fineBucket && next <= fineHead + FINE_BUCKETS; next++) {
+                int slot = (int) (next % FINE_BUCKETS);
+                hour -= fine[slot];
+                fine[slot] = 0;
+            }
+            fineHead = Math.max(fineHead, fineBucket);
+            for (long next = coarseHead + 1; next <= coarseBucket && next <= coarseHead + COARSE_BUCKETS; next++) {
+                day -= coarse[(int) ((next - DAY_BUCKETS) % COARSE_BUCKETS)];
+                int slot = (int) (next % COARSE_BUCKETS);
+                week -= coarse[slot];
+                coarse[slot] = 0;
+            }
+            if (coarseBucket - coarseHead >= DAY_BUCKETS) {
+                day = 0;
+            }
+            coarseHead = Math.max(coarseHead, coarseBucket);
+        }
+
+        // Лайк (delta = 1) или его снятие (delta = -1) попадает в свою корзину, если она еще внутри окна
+        void add(long fineBucket, long coarseBucket, int delta) {
+            if (fineHead - fineBucket < FINE_BUCKETS) {
+                fine[(int) (fineBucket % FINE_BUCKETS)] += delta;
+                hour += delta;
+            }
+            if (coarseHead - coarseBucket < COARSE_BUCKETS) {
+                coarse[(int) (coarseBucket % COARSE_BUCKETS)] += delta;
+                week += delta;
+                if (coarseHead - coarseBucket < DAY_BUCKETS) {
+                    day += delta;
+                }
+            }
+        }
+    }
+
+    private static final class Score implements Comparable<Score> {
+        final long filmId;
+        final int likes;
+
+        Score(long filmId, int likes) {
+            this.filmId = filmId;
+            this.likes = likes;
+        }
+
+        @Override
+        public int compareTo(Score other) {
+            int byLikes = Integer.compare(other.likes, likes);
+            return byLikes != 0 ? byLikes : Long.compare(filmId, other.filmId);
+        }
+    }
+}
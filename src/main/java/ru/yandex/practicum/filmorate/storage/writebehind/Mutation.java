@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+import lombok.Builder;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Изменение, уже примененное в памяти и ожидающее записи в H2. Строки пользователя и фильма передаются
+// целиком, поэтому повторная запись того же изменения ничего не портит
+@Data
+@Builder
+public class Mutation {
+    private final MutationType type;
+    private final User user;
+    private final Film film;
+    private final Event event;
+    private final long filmId;
+    private final long userId;
+    private final long friendId;
+    private final List<Integer> genreIds; // для DELETE_GENRES null означает все жанры фильма
+    private final LocalDateTime createdAt;
+
+    public static Mutation user(User user) {
+        return Mutation.builder().type(MutationType.USER).user(user).build();
+    }
+
+    public static Mutation film(Film film) {
+        return Mutation.builder().type(MutationType.FILM).film(film).build();
+    }
+
+    public static Mutation like(long filmId, long userId) {
+        return Mutation.builder()
+                .type(MutationType.LIKE)
+                .filmId(filmId)
+                .userId(userId)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    public static Mutation unlike(long filmId, long userId) {
+        return Mutation.builder().type(MutationType.UNLIKE).filmId(filmId).userId(userId).build();
+    }
+
+    public static Mutation friend(long userId, long friendId) {
+        return Mutation.builder().type(MutationType.FRIEND).userId(userId).friendId(friendId).build();
+    }
+
+    public static Mutation unfriend(long userId, long friendId) {
+        return Mutation.builder().type(MutationType.UNFRIEND).userId(userId).friendId(friendId).build();
+    }
+
+    public static Mutation addGenres(long filmId, List<Integer> genreIds) {
+        return Mutation.builder().type(MutationType.ADD_GENRES).filmId(filmId).genreIds(genreIds).build();
+    }
+
+    public static Mutation deleteGenres(long filmId, List<Integer> genreIds) {
+        return Mutation.builder().type(MutationType.DELETE_GENRES).filmId(filmId).genreIds(genreIds).build();
+    }
+
+    public static Mutation event(Event event) {
+        return Mutation.builder().type(MutationType.EVENT).event(event).build();
+    }
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+public enum MutationType {
+    USER,
+    FILM,
+    LIKE,
+    UNLIKE,
+    FRIEND,
+    UNFRIEND,
+    ADD_GENRES,
+    DELETE_GENRES,
+    EVENT
+}
@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// Записывает пакет изменений в H2 одной транзакцией. Подряд идущие изменения одного типа уходят одним
+// JDBC-пакетом. Id уже назначены в памяти, поэтому строки пишутся через MERGE по ключу, а лайки и друзья -
+// условными вставками: повтор пакета после сбоя дает тот же результат
+@RequiredArgsConstructor
+@Slf4j
+public class WriteBehindDbWriter implements Consumer<List<Mutation>> {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void accept(List<Mutation> mutations) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int from = 0;
+            while (from < mutations.size()) {
+                MutationType type = mutations.get(from).getType();
+                int to = from;
+                while (to < mutations.size() && mutations.get(to).getType() == type) {
+                    to++;
+                }
+                write(type, mutations.subList(from, to));
+                from = to;
+            }
+        });
+        log.debug("Written {} mutations", mutations.size());
+    }
+
+    private void write(MutationType type, List<Mutation> run) {
+        switch (type) {
+            case USER:
+                writeUsers(run);
+                break;
+            case FILM:
+                writeFilms(run);
+                break;
+            case LIKE:
+                writeLikes(run, true);
+                break;
+            case UNLIKE:
+                writeLikes(run, false);
+                break;
+            case FRIEND:
+                writeFriends(run, true);
+                break;
+            case UNFRIEND:
+                writeFriends(run, false);
+                break;
+            case ADD_GENRES:
+            case DELETE_GENRES:
+                run.forEach(this::writeGenres);
+                break;
+            case EVENT:
+                writeEvents(run);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported mutation type " + type);
+        }
+    }
+
+    // Из нескольких версий одной строки в пакете достаточно последней
+    private void writeUsers(List<Mutation> run) {
+        Map<Long, User> users = new LinkedHashMap<>();
+        run.forEach(mutation -> users.put(mutation.getUser().getId(), mutation.getUser()));
+        List<Object[]> args = new ArrayList<>();
+        users.values().forEach(user -> args.add(new Object[]{user.getId(), user.getEmail(), user.getLogin(),
+                user.getName(), user.getBirthday(), user.getVersion()}));
+        jdbcTemplate.batchUpdate("merge into USERS (USER_ID, EMAIL, LOGIN, NAME, BIRTHDAY, VERSION) key (USER_ID) " +
+                "values (?, ?, ?, ?, ?, ?)", args);
+    }
+
+    // LIKES_COUNT не входит в MERGE: он ведется записью лайков
+    private void writeFilms(List<Mutation> run) {
+        Map<Long, Film> films = new LinkedHashMap<>();
+        run.forEach(mutation -> films.put(mutation.getFilm().getId(), mutation.getFilm()));
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> filmIds = new ArrayList<>();
+        List<Object[]> genres = new ArrayList<>();
+        films.values().forEach(film -> {
+            rows.add(new Object[]{film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                    film.getDuration(), film.getRate(), film.getMpa() == null ? null : film.getMpa().getId(),
+                    film.getVersion()});
+            filmIds.add(new Object[]{film.getId()});
+            if (film.getGenres() != null) {
+                film.getGenres().stream()
+                        .map(Genre::getId)
+                        .distinct()
+                        .forEach(genreId -> genres.add(new Object[]{film.getId(), genreId}));
+            }
+        });
+        jdbcTemplate.batchUpdate("merge into FILMS (FILM_ID, NAME, DESCRIPTION, RELEASE_DATE, DURATION, RATE, " +
+                "MPA_ID, VERSION) key (FILM_ID) values (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        jdbcTemplate.batchUpdate("delete from FILM_GENRE_LINE where FILM_ID = ?", filmIds);
+        if (!genres.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into FILM_GENRE_LINE (FILM_ID, GENRE_ID) values (?, ?)", genres);
+        }
+    }
+
+    // Счетчик FILMS.LIKES_COUNT меняется только на реально вставленные или удаленные лайки
+    private void writeLikes(List<Mutation> run, boolean addition) {
+        List<Object[]> args = new ArrayList<>();
+        run.forEach(mutation -> args.add(addition
+                ? new Object[]{mutation.getUserId(), mutation.getFilmId(), mutation.getCreatedAt(),
+                mutation.getUserId(), mutation.getFilmId()}
+                : new Object[]{mutation.getUserId(), mutation.getFilmId()}));
+        int[] counts = jdbcTemplate.batchUpdate(addition
+                ? "insert into LIKES (USER_ID, FILM_ID, CREATED_AT) select ?, ?, ? " +
+                "where not exists (select 1 from LIKES where USER_ID = ? and FILM_ID = ?)"
+                : "delete from LIKES where USER_ID = ? and FILM_ID = ?", args);
+        Map<Long, Integer> deltas = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                deltas.merge(run.get(i).getFilmId(), addition ? 1 : -1, Integer::sum);
+            }
+        }
+        List<Object[]> counters = new ArrayList<>();
+        deltas.forEach((filmId, delta) -> counters.add(new Object[]{delta, filmId}));
+        if (!counters.isEmpty()) {
+            jdbcTemplate.batchUpdate("update FILMS set LIKES_COUNT = LIKES_COUNT + ? where FILM_ID = ?", counters);
+        }
+    }
+
+    private void writeFriends(List<Mutation> run, boolean addition) {
+        List<Object[]> args = new ArrayList<>();
+        run.forEach(mutation -> args.add(addition
+                ? new Object[]{mutation.getUserId(), mutation.getFriendId(), mutation.getUserId(),
+                mutation.getFriendId()}
+                : new Object[]{mutation.getUserId(), mutation.getFriendId()}));
+        jdbcTemplate.batchUpdate(addition
+                ? "insert into FRIENDS (USER_ID, FRIEND_ID) select ?, ? " +
+                "where not exists (select 1 from FRIENDS where USER_ID = ? and FRIEND_ID = ?)"
+                : "delete from FRIENDS where USER_ID = ? and FRIEND_ID = ?", args);
+    }
+
+    private void writeGenres(Mutation mutation) {
+        long filmId = mutation.getFilmId();
+        if (mutation.getType() == MutationType.DELETE_GENRES && mutation.getGenreIds() == null) {
+            jdbcTemplate.update("delete from FILM_GENRE_LINE where FILM_ID = ?", filmId);
+            return;
+        }
+        List<Object[]> args = new ArrayList<>();
+        mutation.getGenreIds().forEach(genreId -> args.add(new Object[]{filmId, genreId}));
+        jdbcTemplate.batchUpdate(mutation.getType() == MutationType.ADD_GENRES
+                ? "merge into FILM_GENRE_LINE (FILM_ID, GENRE_ID) key (FILM_ID, GENRE_ID) values (?, ?)"
+                : "delete from FILM_GENRE_LINE where FILM_ID = ? and GENRE_ID = ?", args);
+    }
+
+    private void writeEvents(List<Mutation> run) {
+        List<Object[]> args = new ArrayList<>();
+        run.forEach(mutation -> {
+            Event event = mutation.getEvent();
+            args.add(new Object[]{event.getEventId(), event.getUserId(), event.getEventType().name(),
+                    event.getOperation().name(), event.getEntityId(), event.getCreatedAt()});
+        });
+        jdbcTemplate.batchUpdate("merge into EVENTS (EVENT_ID, USER_ID, EVENT_TYPE, OPERATION, ENTITY_ID, " +
+                "CREATED_AT) key (EVENT_ID) values (?, ?, ?, ?, ?, ?)", args);
+    }
+}
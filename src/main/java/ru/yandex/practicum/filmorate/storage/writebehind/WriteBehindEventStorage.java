@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.dal.EventStorage;
+
+import java.util.List;
+
+// Событие получает id в памяти и с ним же уходит в очередь отложенной записи в H2
+@RequiredArgsConstructor
+public class WriteBehindEventStorage implements EventStorage {
+    private final EventStorage memoryStorage;
+    private final WriteBehindQueue queue;
+
+    @Override
+    public Event addEvent(Event event) {
+        return queue.write(1, () -> memoryStorage.addEvent(event), stored -> List.of(Mutation.event(stored)));
+    }
+
+    @Override
+    public List<Event> getFeed(long userId, long afterEventId, int limit) {
+        return memoryStorage.getFeed(userId, afterEventId, limit);
+    }
+
+    @Override
+    public List<Event> getEvents(long afterEventId, int limit) {
+        return memoryStorage.getEvents(afterEventId, limit);
+    }
+
+    @Override
+    public long getLastEventId() {
+        return memoryStorage.getLastEventId();
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.dal.FilmGenreLineStorage;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class WriteBehindFilmGenreLineStorage implements FilmGenreLineStorage {
+    private final FilmGenreLineStorage memoryStorage;
+    private final WriteBehindQueue queue;
+
+    @Override
+    public void addGenres(List<Genre> genres, long filmId) {
+        List<Integer> genreIds = genres.stream()
+                .map(Genre::getId)
+                .distinct()
+                .collect(Collectors.toList());
+        queue.write(1, () -> {
+            memoryStorage.addGenres(genres, filmId);
+            return genreIds;
+        }, added -> List.of(Mutation.addGenres(filmId, added)));
+    }
+
+    @Override
+    public void deleteGenres(long filmId) {
+        queue.write(1, () -> {
+            memoryStorage.deleteGenres(filmId);
+            return filmId;
+        }, deleted -> List.of(Mutation.deleteGenres(filmId, null)));
+    }
+
+    @Override
+    public void deleteGenres(long filmId, List<Integer> genreIds) {
+        queue.write(1, () -> {
+            memoryStorage.deleteGenres(filmId, genreIds);
+            return genreIds;
+        }, deleted -> List.of(Mutation.deleteGenres(filmId, List.copyOf(deleted))));
+    }
+
+    @Override
+    public List<Integer> getListOfGenres(long id) {
+        return memoryStorage.getListOfGenres(id);
+    }
+}
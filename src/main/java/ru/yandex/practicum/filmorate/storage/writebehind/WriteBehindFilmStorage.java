@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.storage.dal.FilmStorage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+// Чтение и запись в памяти, сохраненный фильм с жанрами уходит в очередь отложенной записи в H2
+@RequiredArgsConstructor
+public class WriteBehindFilmStorage implements FilmStorage {
+    private final FilmStorage memoryStorage;
+    private final WriteBehindQueue queue;
+
+    @Override
+    public Collection<Film> getFilms() {
+        return memoryStorage.getFilms();
+    }
+
+    @Override
+    public Collection<Film> getFilms(Set<FilmField> fields) {
+        return memoryStorage.getFilms(fields);
+    }
+
+    @Override
+    public Film addFilm(Film film) {
+        return queue.write(1, () -> memoryStorage.addFilm(film), saved -> List.of(Mutation.film(saved)));
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        return queue.write(1, () -> memoryStorage.updateFilm(film), saved -> List.of(Mutation.film(saved)));
+    }
+
+    @Override
+    public Film getFilmById(long filmId) {
+        return memoryStorage.getFilmById(filmId);
+    }
+
+    @Override
+    public Film getFilmById(long filmId, Set<FilmField> fields) {
+        return memoryStorage.getFilmById(filmId, fields);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+        return memoryStorage.getFilmsByIds(filmIds);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds, Set<FilmField> fields) {
+        return memoryStorage.getFilmsByIds(filmIds, fields);
+    }
+
+    @Override
+    public Set<Long> getExistingFilmIds(Collection<Long> filmIds) {
+        return memoryStorage.getExistingFilmIds(filmIds);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.FriendBatchItem;
+import ru.yandex.practicum.filmorate.model.Friends;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.dal.FriendsStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// В очередь попадают только изменения дружбы, изменившие данные в памяти
+@RequiredArgsConstructor
+public class WriteBehindFriendsStorage implements FriendsStorage {
+    private final FriendsStorage memoryStorage;
+    private final WriteBehindQueue queue;
+
+    @Override
+    public boolean addAsFriend(long userId, long friendId) {
+        return queue.write(1, () -> memoryStorage.addAsFriend(userId, friendId),
+                addition -> addition ? List.of(Mutation.friend(userId, friendId)) : List.of());
+    }
+
+    @Override
+    public boolean removeFromFriends(long userId, long friendId) {
+        return queue.write(1, () -> memoryStorage.removeFromFriends(userId, friendId),
+                removal -> removal ? List.of(Mutation.unfriend(userId, friendId)) : List.of());
+    }
+
+    @Override
+    public boolean[] applyFriends(long userId, List<FriendBatchItem> items) {
+        return queue.write(items.size(), () -> memoryStorage.applyFriends(userId, items), applied -> {
+            List<Mutation> mutations = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                FriendBatchItem item = items.get(i);
+                if (applied[i]) {
+                    mutations.add(item.getOperation() == Operation.ADD
+                            ? Mutation.friend(userId, item.getFriendId())
+                            : Mutation.unfriend(userId, item.getFriendId()));
+                }
+            }
+            return mutations;
+        });
+    }
+
+    @Override
+    public List<Long> getListOfFriends(long userId) {
+        return memoryStorage.getListOfFriends(userId);
+    }
+
+    @Override
+    public List<Long> getListOfFriends(long userId, long afterFriendId, int limit) {
+        return memoryStorage.getListOfFriends(userId, afterFriendId, limit);
+    }
+
+    @Override
+    public List<Long> getAListOfMutualFriends(long userId, long otherId) {
+        return memoryStorage.getAListOfMutualFriends(userId, otherId);
+    }
+
+    @Override
+    public List<Long> getAListOfMutualFriends(long userId, long otherId, long afterFriendId, int limit) {
+        return memoryStorage.getAListOfMutualFriends(userId, otherId, afterFriendId, limit);
+    }
+
+    @Override
+    public List<Friends> getAllFriends() {
+        return memoryStorage.getAllFriends();
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.Likes;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.dal.LikesStorage;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// В очередь попадают только лайки, изменившие данные в памяти
+@RequiredArgsConstructor
+public class WriteBehindLikesStorage implements LikesStorage {
+    private final LikesStorage memoryStorage;
+    private final WriteBehindQueue queue;
+
+    @Override
+    public boolean addLike(long filmId, long userId) {
+        return queue.write(1, () -> memoryStorage.addLike(filmId, userId),
+                addition -> addition ? List.of(Mutation.like(filmId, userId)) : List.of());
+    }
+
+    @Override
+    public boolean unlike(long filmId, long userId) {
+        return queue.write(1, () -> memoryStorage.unlike(filmId, userId),
+                removal -> removal ? List.of(Mutation.unlike(filmId, userId)) : List.of());
+    }
+
+    @Override
+    public boolean[] applyLikes(List<LikeBatchItem> items) {
+        return queue.write(items.size(), () -> memoryStorage.applyLikes(items), applied -> {
+            List<Mutation> mutations = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                LikeBatchItem item = items.get(i);
+                if (applied[i]) {
+                    mutations.add(item.getOperation() == Operation.ADD
+                            ? Mutation.like(item.getFilmId(), item.getUserId())
+                            : Mutation.unlike(item.getFilmId(), item.getUserId()));
+                }
+            }
+            return mutations;
+        });
+    }
+
+    @Override
+    public List<Long> getListOfLikes(long filmId) {
+        return memoryStorage.getListOfLikes(filmId);
+    }
+
+    @Override
+    public List<Long> getListOfLikes(long filmId, long afterUserId, int limit) {
+        return memoryStorage.getListOfLikes(filmId, afterUserId, limit);
+    }
+
+    @Override
+    public List<Long> getTheBestFilms(int count) {
+        return memoryStorage.getTheBestFilms(count);
+    }
+
+    @Override
+    public List<Likes> getAllLikes() {
+        return memoryStorage.getAllLikes();
+    }
+
+    @Override
+    public List<Likes> getLikesSince(LocalDateTime from) {
+        return memoryStorage.getLikesSince(from);
+    }
+
+    @Override
+    public List<Likes> getLikes(List<LikeBatchItem> items) {
+        return memoryStorage.getLikes(items);
+    }
+}
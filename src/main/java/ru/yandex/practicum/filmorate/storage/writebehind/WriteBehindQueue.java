@@ -0,0 +1,233 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Очередь отложенной записи: изменение применяется в памяти и ставится в очередь под одной блокировкой,
+// поэтому порядок в очереди совпадает с порядком изменений в памяти. Единственный поток-писатель забирает
+// изменения пакетами и записывает их в H2 в том же порядке. Емкость ограничена разрешениями семафора:
+// если писатель отстал, запрос ждет место не дольше offer-timeout и получает 503
+@Slf4j
+public class WriteBehindQueue {
+    private static final long POLL_MILLIS = 100;
+
+    private final Consumer<List<Mutation>> writer;
+    private final int capacity;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final long offerTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+    private final Semaphore permits;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Object writeLock = new Object();
+    private final Object progress = new Object();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile long inFlightSince; // время постановки самого старого изменения в текущем пакете, 0 - нет пакета
+    private volatile boolean running;
+    private Thread thread;
+
+    public WriteBehindQueue(Consumer<List<Mutation>> writer, int capacity, int batchSize, int maxAttempts,
+                            long retryBackoffMillis, long offerTimeoutMillis, long shutdownTimeoutMillis) {
+        this.writer = writer;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.permits = new Semaphore(capacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "write-behind");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Write-behind queue started: capacity {}, batch size {}", capacity, batchSize);
+    }
+
+    // Остановка дожидается записи уже принятых изменений, но не дольше shutdown-timeout
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        thread.join(shutdownTimeoutMillis);
+        if (thread.isAlive()) {
+            thread.interrupt();
+            log.warn("Write-behind queue stopped with {} mutations not written", pending.get());
+        }
+    }
+
+    // Применяет изменение в памяти и ставит в очередь его записи. maxMutations - сколько записей изменение
+    // может породить: место под них занимается заранее, чтобы не изменить память без места в очереди
+    public <T> T write(int maxMutations, Supplier<T> change, Function<T, List<Mutation>> mutations) {
+        if (maxMutations > capacity) {
+            throw new ServiceUnavailableException(String.format("Change of %s records exceeds write-behind capacity %s",
+                    maxMutations, capacity));
+        }
+        try {
+            if (!permits.tryAcquire(maxMutations, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ServiceUnavailableException("Write-behind queue is full, try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for write-behind queue");
+        }
+        int queued = 0;
+        try {
+            synchronized (writeLock) {
+                T result = change.get();
+                List<Mutation> records = mutations.apply(result);
+                long now = System.nanoTime();
+                for (Mutation mutation : records) {
+                    pending.incrementAndGet();
+                    queue.add(new Entry(mutation, now));
+                    queued++;
+                }
+                enqueued.addAndGet(queued);
+                return result;
+            }
+        } finally {
+            permits.release(maxMutations - queued);
+        }
+    }
+
+    // Ждет, пока все принятые изменения будут записаны или отброшены
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (progress) {
+            while (pending.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                progress.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    // Отставание записи: возраст самого старого еще не записанного изменения
+    public long getLagMillis() {
+        long oldest = inFlightSince;
+        if (oldest == 0) {
+            Entry head = queue.peek();
+            if (head == null) {
+                return 0;
+            }
+            oldest = head.enqueuedAt;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest);
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("pending", pending.get());
+        snapshot.put("lagMs", getLagMillis());
+        snapshot.put("enqueued", enqueued.get());
+        snapshot.put("applied", applied.get());
+        snapshot.put("failed", failed.get());
+        snapshot.put("retries", retries.get());
+        snapshot.put("batches", batches.get());
+        return snapshot;
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            Entry first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            inFlightSince = first.enqueuedAt;
+            apply(batch);
+            inFlightSince = 0;
+            pending.addAndGet(-batch.size());
+            permits.release(batch.size());
+            batch.clear();
+            synchronized (progress) {
+                progress.notifyAll();
+            }
+        }
+    }
+
+    // Пакет, не записанный после всех попыток, пишется по одному изменению: отбрасываются только те,
+    // что не записываются сами по себе
+    private void apply(List<Entry> batch) {
+        List<Mutation> mutations = new ArrayList<>(batch.size());
+        batch.forEach(entry -> mutations.add(entry.mutation));
+        batches.incrementAndGet();
+        if (tryApply(mutations, maxAttempts)) {
+            applied.addAndGet(mutations.size());
+            return;
+        }
+        for (Mutation mutation : mutations) {
+            if (mutations.size() > 1 && tryApply(List.of(mutation), 1)) {
+                applied.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+                log.error("Write-behind mutation dropped after {} attempts: {}", maxAttempts, mutation);
+            }
+        }
+    }
+
+    private boolean tryApply(List<Mutation> mutations, int attempts) {
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            try {
+                writer.accept(mutations);
+                return true;
+            } catch (RuntimeException e) {
+                log.warn("Write-behind batch of {} mutations failed, attempt {} of {}", mutations.size(), attempt,
+                        attempts, e);
+            }
+            if (attempt < attempts) {
+                retries.incrementAndGet();
+                try {
+                    Thread.sleep(retryBackoffMillis << (attempt - 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class Entry {
+        private final Mutation mutation;
+        private final long enqueuedAt;
+
+        private Entry(Mutation mutation, long enqueuedAt) {
+            this.mutation = mutation;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
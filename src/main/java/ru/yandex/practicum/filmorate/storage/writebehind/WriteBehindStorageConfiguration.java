@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.storage.dal.*;
+import ru.yandex.practicum.filmorate.storage.inMemory.*;
+
+// Режим write-behind (filmorate.storage.mode=write-behind): чтение и запись в памяти, изменения записываются
+// в H2 асинхронно через ограниченную очередь, и время ответа не включает коммит JDBC. Справочники и загрузка
+// памяти из H2 при старте берутся из HybridStorageConfiguration
+@Configuration
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "write-behind")
+@RequiredArgsConstructor
+public class WriteBehindStorageConfiguration {
+    private final InMemoryDatabase database;
+
+    @Bean
+    public WriteBehindQueue writeBehindQueue(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                             @Value("${filmorate.write-behind.capacity:10000}") int capacity,
+                                             @Value("${filmorate.write-behind.batch-size:500}") int batchSize,
+                                             @Value("${filmorate.write-behind.max-attempts:5}") int maxAttempts,
+                                             @Value("${filmorate.write-behind.retry-backoff-ms:100}")
+                                             long retryBackoffMillis,
+                                             @Value("${filmorate.write-behind.offer-timeout-ms:1000}")
+                                             long offerTimeoutMillis,
+                                             @Value("${filmorate.write-behind.shutdown-timeout-ms:10000}")
+                                             long shutdownTimeoutMillis) {
+        return new WriteBehindQueue(new WriteBehindDbWriter(jdbcTemplate, new TransactionTemplate(transactionManager)),
+                capacity, batchSize, maxAttempts, retryBackoffMillis, offerTimeoutMillis, shutdownTimeoutMillis);
+    }
+
+    @Bean
+    public FilmGenreLineStorage filmGenreLineStorage(WriteBehindQueue queue) {
+        return new WriteBehindFilmGenreLineStorage(new InMemoryFilmGenreLineStorage(database), queue);
+    }
+
+    @Bean
+    public LikesStorage likesStorage(WriteBehindQueue queue) {
+        return new WriteBehindLikesStorage(new InMemoryLikesStorage(database), queue);
+    }
+
+    @Bean
+    public FriendsStorage friendsStorage(WriteBehindQueue queue) {
+        return new WriteBehindFriendsStorage(new InMemoryFriendsStorage(database), queue);
+    }
+
+    @Bean
+    public EventStorage eventStorage(WriteBehindQueue queue) {
+        return new WriteBehindEventStorage(new InMemoryEventStorage(database), queue);
+    }
+
+    @Bean
+    public UserStorage userStorage(WriteBehindQueue queue) {
+        return new WriteBehindUserStorage(new InMemoryUserStorage(database), queue);
+    }
+
+    @Bean
+    public FilmStorage filmStorage(WriteBehindQueue queue) {
+        return new WriteBehindFilmStorage(new InMemoryFilmStorage(database), queue);
+    }
+}
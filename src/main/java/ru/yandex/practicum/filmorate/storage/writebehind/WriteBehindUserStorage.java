@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.storage.dal.UserStorage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+// Чтение и запись в памяти, сохраненная строка уходит в очередь отложенной записи в H2
+@RequiredArgsConstructor
+public class WriteBehindUserStorage implements UserStorage {
+    private final UserStorage memoryStorage;
+    private final WriteBehindQueue queue;
+
+    @Override
+    public Collection<User> getUsers() {
+        return memoryStorage.getUsers();
+    }
+
+    @Override
+    public Collection<User> getUsers(Set<UserField> fields) {
+        return memoryStorage.getUsers(fields);
+    }
+
+    @Override
+    public User addUser(User user) {
+        return queue.write(1, () -> memoryStorage.addUser(user), saved -> List.of(Mutation.user(saved)));
+    }
+
+    @Override
+    public User updateUser(User user) {
+        return queue.write(1, () -> memoryStorage.updateUser(user), saved -> List.of(Mutation.user(saved)));
+    }
+
+    @Override
+    public User getUserById(long userId) {
+        return memoryStorage.getUserById(userId);
+    }
+
+    @Override
+    public User getUserById(long userId, Set<UserField> fields) {
+        return memoryStorage.getUserById(userId, fields);
+    }
+
+    @Override
+    public List<User> getUsersByIds(List<Long> userIds, Set<UserField> fields) {
+        return memoryStorage.getUsersByIds(userIds, fields);
+    }
+
+    @Override
+    public Set<Long> getExistingUserIds(Collection<Long> userIds) {
+        return memoryStorage.getExistingUserIds(userIds);
+    }
+}
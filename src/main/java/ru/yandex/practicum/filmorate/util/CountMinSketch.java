@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.util;
+
+// Count-min sketch: оценка частоты не меньше истинной и превышает ее не более чем на epsilon * N
+// с вероятностью 1 - delta, где N — сумма всех счетчиков. Память: ceil(e / epsilon) * ceil(ln(1 / delta)) int
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final int[][] counters;
+    private final long[] seeds;
+    private long total;
+
+    public CountMinSketch(double epsilon, double delta) {
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("epsilon and delta must be in (0, 1)");
+        }
+        width = (int) Math.ceil(Math.E / epsilon);
+        depth = (int) Math.ceil(Math.log(1 / delta));
+        counters = new int[depth][width];
+        seeds = new long[depth];
+        for (int row = 0; row < depth; row++) {
+            seeds[row] = 0x9E3779B97F4A7C15L * (row + 1) + 0x632BE59BD9B4E019L;
+        }
+    }
+
+    public synchronized void add(long key, int delta) {
+        for (int row = 0; row < depth; row++) {
+            counters[row][column(key, row)] += delta;
+        }
+        total += delta;
+    }
+
+    public synchronized int estimate(long key) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row][column(key, row)]);
+        }
+        return Math.max(estimate, 0);
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    private int column(long key, int row) {
+        long hash = (key ^ seeds[row]) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 31)) * 0x94D049BB133111EBL;
+        hash ^= hash >>> 29;
+        return (int) ((hash & Long.MAX_VALUE) % width);
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.util;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+// ETag фильма и пользователя - номер версии записи в кавычках: "3"
+public final class ETags {
+    private ETags() {
+    }
+
+    public static String of(Long version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    // Версия из заголовка If-Match; null для отсутствующего заголовка и If-Match: *
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new ValidationException(String.format("Invalid If-Match header %s", ifMatch));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Arrays;
+
+// Открытая адресация с линейным пробированием: ключи long, значения int, без упаковки в объекты.
+// Ключ 0 зарезервирован под пустую ячейку — id в БД всегда положительные.
+public class LongIntHashMap {
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int threshold;
+    private int size;
+
+    public LongIntHashMap() {
+        this(8);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR) + 1) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int get(long key) {
+        int slot = find(key);
+        return slot < 0 ? 0 : values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    public void put(long key, int value) {
+        checkKey(key);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        insertAt(slot, key, value);
+    }
+
+    // Прибавляет delta и возвращает новое значение; ключ с нулевым значением удаляется
+    public int addTo(long key, int delta) {
+        checkKey(key);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                int value = values[slot] + delta;
+                if (value == 0) {
+                    removeAt(slot);
+                } else {
+                    values[slot] = value;
+                }
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (delta != 0) {
+            insertAt(slot, key, delta);
+        }
+        return delta;
+    }
+
+    public int remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return 0;
+        }
+        int value = values[slot];
+        removeAt(slot);
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    public long[] keys() {
+        long[] result = new long[size];
+        int n = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                result[n++] = key;
+            }
+        }
+        return result;
+    }
+
+    public interface Visitor {
+        void visit(long key, int value);
+    }
+
+    private int find(long key) {
+        if (key == EMPTY) {
+            return -1;
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertAt(int slot, long key, int value) {
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > threshold) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    // Удаление со сдвигом назад, чтобы цепочки пробирования оставались непрерывными без "надгробий"
+    private void removeAt(int slot) {
+        int gap = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (keys[next] == EMPTY) {
+                break;
+            }
+            int home = slot(keys[next]);
+            boolean stays = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+            if (!stays) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = 0;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Частичное представление объекта для параметра fields=: в JSON остаются только запрошенные ключи
+public final class Projections {
+    private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    private Projections() {
+    }
+
+    public static Map<String, Object> project(ObjectMapper objectMapper, Object value, Set<String> fields) {
+        Map<String, Object> values = objectMapper.convertValue(value, MAP_TYPE);
+        values.keySet().retainAll(fields);
+        return values;
+    }
+
+    public static List<Map<String, Object>> project(ObjectMapper objectMapper, Collection<?> values,
+                                                    Set<String> fields) {
+        return values.stream()
+                .map(value -> project(objectMapper, value, fields))
+                .collect(Collectors.toList());
+    }
+}
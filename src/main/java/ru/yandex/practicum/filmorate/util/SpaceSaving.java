@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.*;
+
+// Space-saving: отслеживает не более capacity самых частых ключей. Новый ключ вытесняет ключ с минимальным
+// счетчиком и наследует его значение, поэтому любой ключ с частотой больше N / capacity гарантированно отслеживается
+public class SpaceSaving {
+    private static final Comparator<Counter> BY_COUNT = Comparator.<Counter>comparingLong(counter -> counter.count)
+            .thenComparingLong(counter -> counter.key);
+
+    private final int capacity;
+    private final Map<Long, Counter> counters = new HashMap<>();
+    private final NavigableSet<Counter> byCount = new TreeSet<>(BY_COUNT);
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public synchronized void add(long key) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count++;
+            byCount.add(counter);
+            return;
+        }
+        if (counters.size() < capacity) {
+            counter = new Counter(key, 1);
+        } else {
+            Counter evicted = byCount.pollFirst();
+            counters.remove(evicted.key);
+            counter = new Counter(key, evicted.count + 1);
+        }
+        counters.put(key, counter);
+        byCount.add(counter);
+    }
+
+    // Снятие голоса уменьшает счетчик только отслеживаемого ключа; для остальных оно уже учтено при вытеснении
+    public synchronized void remove(long key) {
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            return;
+        }
+        byCount.remove(counter);
+        if (--counter.count <= 0) {
+            counters.remove(key);
+        } else {
+            byCount.add(counter);
+        }
+    }
+
+    // Отслеживаемые ключи по убыванию счетчика
+    public synchronized List<Long> keys() {
+        List<Long> keys = new ArrayList<>(counters.size());
+        for (Counter counter : byCount.descendingSet()) {
+            keys.add(counter.key);
+        }
+        return keys;
+    }
+
+    public synchronized int size() {
+        return counters.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private static final class Counter {
+        final long key;
+        long count;
+
+        Counter(long key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+}
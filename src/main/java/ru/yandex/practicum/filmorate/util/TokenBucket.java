@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Токен-бакет в форме GCRA: вместо числа токенов хранится одно "теоретическое время прибытия" (TAT)
+// следующего запроса, поэтому бакет обновляется одним CAS без блокировок и без фонового пополнения
+public class TokenBucket {
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("rate and burst must be positive");
+        }
+        this.emissionIntervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.burstNanos = emissionIntervalNanos * burst;
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    // 0, если токен выдан, иначе сколько наносекунд ждать до следующего токена
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, nowNanos) + emissionIntervalNanos;
+            long wait = next - burstNanos - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // Бакет полон: его можно выбросить, новый бакет поведет себя так же
+    public boolean isFull(long nowNanos) {
+        return theoreticalArrival.get() <= nowNanos;
+    }
+}
@@ -1,3 +1,4 @@
+DELETE FROM EVENTS;
 DELETE FROM LIKES;
 DELETE FROM FILM_GENRE_LINE;
 DELETE FROM FRIENDS;
@@ -5,6 +6,7 @@ DELETE FROM USERS;
 DELETE FROM FILMS;
 ALTER TABLE USERS ALTER COLUMN USER_ID RESTART WITH 1;
 ALTER TABLE FILMS ALTER COLUMN fILM_ID RESTART WITH 1;
+ALTER TABLE EVENTS ALTER COLUMN EVENT_ID RESTART WITH 1;
 
 MERGE INTO GENRES KEY(genre_id)
     VALUES (1, 'Комедия'),
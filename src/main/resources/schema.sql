@@ -5,10 +5,14 @@ CREATE TABLE IF NOT EXISTS users
     login    varchar NOT NULL,
     name     varchar,
     birthday date CHECK (birthday <= CURRENT_DATE),
+    version  bigint DEFAULT 0 NOT NULL,
     CONSTRAINT login_is_not_empty CHECK (login <> ''),
     CONSTRAINT no_spaces_in_login CHECK (login NOT IN (' '))
 );
 
+-- Колонка версии для файловой БД, созданной до ее появления (то же для films ниже)
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version bigint DEFAULT 0 NOT NULL;
+
 CREATE TABLE IF NOT EXISTS genres
 (
     genre_id Integer PRIMARY KEY,
@@ -37,17 +41,39 @@ CREATE TABLE IF NOT EXISTS films
     duration     Integer,
     rate         Integer,
     MPA_id       Integer REFERENCES rating_MPA (MPA_id),
+    likes_count  Integer DEFAULT 0 NOT NULL,
+    version      bigint DEFAULT 0 NOT NULL,
     CONSTRAINT name_is_not_empty CHECK (name <> ''),
     CONSTRAINT duration_positive CHECK (duration > 0)
 );
 
+ALTER TABLE films ADD COLUMN IF NOT EXISTS version bigint DEFAULT 0 NOT NULL;
+
+-- Колонка для файловой БД, созданной до ее появления. Счетчик пересчитывается из LIKES при каждом запуске:
+-- так заполняются добавленная колонка и приращения, не сброшенные до аварийной остановки
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count Integer DEFAULT 0 NOT NULL;
+
+CREATE INDEX IF NOT EXISTS films_likes_count_idx ON films (likes_count DESC, film_id);
+
 CREATE TABLE IF NOT EXISTS likes
 (
-    user_id Integer REFERENCES users (user_id),
-    film_id Integer REFERENCES films (film_id),
+    user_id    Integer REFERENCES users (user_id),
+    film_id    Integer REFERENCES films (film_id),
+    created_at timestamp DEFAULT CURRENT_TIMESTAMP NOT NULL,
     PRIMARY KEY (user_id, film_id)
 );
 
+-- Файловая БД, созданная до появления колонки, пропускает CREATE TABLE; колонка добавляется отдельно
+ALTER TABLE likes ADD COLUMN IF NOT EXISTS created_at timestamp DEFAULT CURRENT_TIMESTAMP NOT NULL;
+
+CREATE INDEX IF NOT EXISTS likes_created_at_idx ON likes (created_at);
+
+CREATE INDEX IF NOT EXISTS likes_film_user_idx ON likes (film_id, user_id);
+
+UPDATE films f
+SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)
+WHERE likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id);
+
 
 
 CREATE TABLE IF NOT EXISTS film_genre_line
@@ -58,3 +84,15 @@ CREATE TABLE IF NOT EXISTS film_genre_line
 );
 
 
+
+CREATE TABLE IF NOT EXISTS events
+(
+    event_id   Integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id    Integer REFERENCES users (user_id),
+    event_type varchar NOT NULL,
+    operation  varchar NOT NULL,
+    entity_id  Integer NOT NULL,
+    created_at timestamp NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS events_user_event_idx ON events (user_id, event_id);
@@ -1,45 +1,120 @@
 package ru.yandex.practicum.filmorate;
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
-import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
-import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.exception.VersionConflictException;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.dal.*;
+import ru.yandex.practicum.filmorate.storage.dao.FilmLikesCounters;
+import ru.yandex.practicum.filmorate.storage.inMemory.InMemoryDatabase;
+import ru.yandex.practicum.filmorate.storage.index.FeedTailBuffer;
+import ru.yandex.practicum.filmorate.storage.index.FilmCoOccurrenceIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.FriendsGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsSnapshot;
+import ru.yandex.practicum.filmorate.storage.index.PopularityLeaderboards;
+import ru.yandex.practicum.filmorate.storage.index.TrendingCounters;
+import ru.yandex.practicum.filmorate.storage.writebehind.WriteBehindQueue;
+import ru.yandex.practicum.filmorate.util.ETags;
+import ru.yandex.practicum.filmorate.util.Projections;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.Matchers.equalTo;
 
-@SpringBootTest
+// Общие тесты хранилищ и сервисов; запускаются для каждого режима filmorate.storage.mode в наследниках
+@SpringBootTest(properties = "filmorate.popular.refresh-interval-ms=3600000")
 @AutoConfigureTestDatabase
-@RequiredArgsConstructor(onConstructor_ = @Autowired)
-class FilmorateApplicationTests {
-    private final JdbcTemplate jdbcTemplate;
-    private final UserStorage userStorage;
-    private final FilmGenreLineStorage filmGenreLineStorage;
-    private final FilmStorage filmStorage;
-    private final FriendsStorage friendsStorage;
-    private final GenreStorage genreStorage;
-    private final LikesStorage likesStorage;
-    private final MpaStorage mpaStorage;
+abstract class FilmorateApplicationTests {
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private FilmGenreLineStorage filmGenreLineStorage;
+    @Autowired
+    protected FilmStorage filmStorage;
+    @Autowired
+    private FriendsStorage friendsStorage;
+    @Autowired
+    private GenreStorage genreStorage;
+    @Autowired
+    private LikesStorage likesStorage;
+    @Autowired
+    private MpaStorage mpaStorage;
+    @Autowired
+    private ObjectProvider<FilmLikesCounters> likesCounters;
+    @Autowired
+    private ObjectProvider<InMemoryDatabase> inMemoryDatabase;
+    @Autowired
+    private ObjectProvider<WriteBehindQueue> writeBehindQueue;
+    @Autowired
+    private FilmCoOccurrenceIndex coOccurrenceIndex;
+    @Autowired
+    private FriendsGraphIndex friendsGraphIndex;
+    @Autowired
+    private FilmSearchIndex searchIndex;
+    @Autowired
+    private PopularityLeaderboards leaderboards;
+    @Autowired
+    private PopularFilmsSnapshot popularSnapshot;
+    @Autowired
+    private TrendingCounters trendingCounters;
+    @Autowired
+    private EventStorage eventStorage;
+    @Autowired
+    private FeedTailBuffer feedTailBuffer;
+    @Autowired
+    private FeedService feedService;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private DomainEventBus eventBus;
 
 
     @AfterEach
-    void tearDown() {
+    void tearDown() throws InterruptedException {
+        assertThat("Асинхронные подписчики не обработали события", eventBus.flush(10_000), is(true));
+        flushWriteBehind();
+        flushLikesCounters();
+        jdbcTemplate.update("DELETE FROM EVENTS");
         jdbcTemplate.update("DELETE FROM LIKES");
         jdbcTemplate.update("DELETE FROM FILM_GENRE_LINE");
         jdbcTemplate.update("DELETE FROM FRIENDS");
@@ -47,6 +122,10 @@ class FilmorateApplicationTests {
         jdbcTemplate.update("DELETE FROM FILMS");
         jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN USER_ID RESTART WITH 1");
         jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN FILM_ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE EVENTS ALTER COLUMN EVENT_ID RESTART WITH 1");
+        inMemoryDatabase.ifAvailable(InMemoryDatabase::clear);
+        feedTailBuffer.load();
+        popularSnapshot.refresh();
     }
 
     @Test
@@ -258,6 +337,142 @@ class FilmorateApplicationTests {
                 contains(addUser3.getId()));
     }
 
+    @Test
+    void getFriendSuggestionsTest() {
+        User user1 = User.builder()
+                .email("user1@yandex.ru")
+                .login("user1")
+                .name("User1")
+                .birthday(LocalDate.of(1991, 1, 1))
+                .build();
+        User user2 = User.builder()
+                .email("user2@yandex.ru")
+                .login("user2")
+                .name("User2")
+                .birthday(LocalDate.of(1992, 1, 1))
+                .build();
+        User user3 = User.builder()
+                .email("user3@yandex.ru")
+                .login("user3")
+                .name("User3")
+                .birthday(LocalDate.of(1993, 1, 1))
+                .build();
+        User addUser1 = userStorage.addUser(user1);
+        User addUser2 = userStorage.addUser(user2);
+        User addUser3 = userStorage.addUser(user3);
+        friendsStorage.addAsFriend(addUser1.getId(), addUser2.getId());
+        friendsStorage.addAsFriend(addUser2.getId(), addUser3.getId());
+        friendsGraphIndex.load();
+        assertThat("Все друзья не загружены", friendsStorage.getAllFriends(), hasSize(2));
+        assertThat("Предложения друзей User1 отличаются от [3]",
+                friendsGraphIndex.suggest(addUser1.getId(), 10), contains(addUser3.getId()));
+        List<User> suggestions = userService.getFriendSuggestions(addUser1.getId(), 10,
+                EnumSet.complementOf(EnumSet.of(UserField.FRIENDS)));
+        assertThat(suggestions.get(0).getLogin(), equalTo("user3"));
+        assertThat("Предложения содержат списки друзей", suggestions.get(0).getFriends(), nullValue());
+        friendsGraphIndex.removeFriend(addUser1.getId(), addUser2.getId());
+        assertThat("Предложения друзей User1 не пусты", friendsGraphIndex.suggest(addUser1.getId(), 10), empty());
+    }
+
+    @Test
+    void getFriendSuggestionsForHubTest() {
+        friendsGraphIndex.load();
+        long hub = 1000;
+        for (long friend = 1001; friend <= 1600; friend++) {
+            friendsGraphIndex.addFriend(hub, friend);
+            friendsGraphIndex.addFriend(friend, 5000 + friend % 3);
+        }
+        friendsGraphIndex.addFriend(1001, 7000);
+        assertThat("Предложения друзей хаба отличаются от [5000, 5001, 5002, 7000]",
+                friendsGraphIndex.suggest(hub, 10), contains(5000L, 5001L, 5002L, 7000L));
+        assertThat("Предложения друзей хаба не усечены до 2",
+                friendsGraphIndex.suggest(hub, 2), contains(5000L, 5001L));
+    }
+
+    @Test
+    void countMutualFriendsTest() {
+        friendsGraphIndex.load();
+        for (long friend = 10; friend < 20; friend++) {
+            friendsGraphIndex.addFriend(1, friend);
+        }
+        List<Long> candidates = new ArrayList<>();
+        for (long candidate = 100; candidate < 500; candidate++) {
+            for (long friend = 10; friend <= 10 + candidate % 10; friend++) {
+                friendsGraphIndex.addFriend(candidate, friend);
+            }
+            friendsGraphIndex.addFriend(candidate, 20);
+            candidates.add(candidate);
+        }
+        candidates.add(9999L);
+        List<MutualFriends> mutualFriends = friendsGraphIndex.countMutualFriends(1, candidates, false);
+        assertThat(mutualFriends, hasSize(401));
+        assertThat("Кандидаты не ранжированы по числу общих друзей", mutualFriends.get(0),
+                equalTo(MutualFriends.builder().userId(109).count(10).build()));
+        assertThat(mutualFriends.get(400), equalTo(MutualFriends.builder().userId(9999).count(0).build()));
+        assertThat(mutualFriends.stream().filter(mutual -> mutual.getCount() == 3).count(), equalTo(40L));
+        assertThat(friendsGraphIndex.countMutualFriends(1, List.of(102L), true).get(0).getFriendIds(),
+                contains(10L, 11L, 12L));
+    }
+
+    @Test
+    void findPathTest() {
+        friendsGraphIndex.load();
+        for (long user = 1; user < 5; user++) {
+            friendsGraphIndex.addFriend(user, user + 1);
+        }
+        friendsGraphIndex.addFriend(1, 10);
+        friendsGraphIndex.addFriend(10, 4);
+        assertThat("Путь не кратчайший", friendsGraphIndex.findPath(1, 5), contains(1L, 10L, 4L, 5L));
+        assertThat(friendsGraphIndex.findPath(2, 2), contains(2L));
+        friendsGraphIndex.addFriend(2, 1);
+        assertThat("Путь через первого загруженного пользователя", friendsGraphIndex.findPath(2, 10),
+                contains(2L, 1L, 10L));
+        assertThat("Путь найден против направления дружбы", friendsGraphIndex.findPath(5, 1), empty());
+        for (long user = 100; user < 107; user++) {
+            friendsGraphIndex.addFriend(user, user + 1);
+        }
+        assertThat(friendsGraphIndex.findPath(100, 106), hasSize(7));
+        assertThat("Путь длиннее max-depth не отброшен", friendsGraphIndex.findPath(100, 107), empty());
+
+        Random random = new Random(7);
+        for (int i = 0; i < 3000; i++) {
+            friendsGraphIndex.addFriend(1000 + random.nextInt(1000), 1000 + random.nextInt(1000));
+        }
+        for (int i = 0; i < 20; i++) {
+            long from = 1000 + random.nextInt(1000);
+            long to = 1000 + random.nextInt(1000);
+            int expected = bfsDistance(from, to);
+            List<Long> path = friendsGraphIndex.findPath(from, to);
+            assertThat("Длина пути расходится с обычным BFS", path.size() - 1, equalTo(expected > 6 ? -1 : expected));
+            for (int j = 1; j < path.size(); j++) {
+                assertThat(friendsGraphIndex.countMutualFriends(path.get(j - 1), List.of(path.get(j - 1)), true)
+                        .get(0).getFriendIds(), hasItem(path.get(j)));
+            }
+        }
+    }
+
+    // Обычный BFS для сверки; друзья пользователя - его общие друзья с самим собой
+    private int bfsDistance(long from, long to) {
+        Map<Long, Integer> distance = new HashMap<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        distance.put(from, 0);
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            long user = queue.poll();
+            if (user == to) {
+                return distance.get(user);
+            }
+            for (MutualFriends friend : friendsGraphIndex.countMutualFriends(user, List.of(user), true)) {
+                for (long next : friend.getFriendIds()) {
+                    if (distance.putIfAbsent(next, distance.get(user) + 1) == null) {
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
     @Test
     void addFilmTest() {
         Film film = Film.builder()
@@ -296,11 +511,117 @@ class FilmorateApplicationTests {
                 .duration(109)
                 .rate(5)
                 .mpa(Mpa.builder().id(1).name("G").build())
-                .likes(new ArrayList<>())
                 .genres(new ArrayList<>())
                 .build();
         Film updateFilm = filmStorage.updateFilm(film2);
         assertThat("Фильм не обновлен", film2, equalTo(updateFilm));
+        assertThat("Ответ на обновление содержит список лайков", updateFilm.getLikes(), nullValue());
+        assertThat(updateFilm.getLikesCount(), equalTo(0L));
+    }
+
+    @Test
+    void updateFilmGenresTest() {
+        Film film = filmStorage.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).build())
+                .genres(List.of(Genre.builder().id(2).build(), Genre.builder().id(1).build()))
+                .build());
+        Film updatedFilm = filmStorage.updateFilm(Film.builder()
+                .id(film.getId())
+                .name("newFilm1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(2).build())
+                .genres(List.of(Genre.builder().id(3).build(), Genre.builder().id(2).build(),
+                        Genre.builder().id(2).build()))
+                .build());
+        assertThat(updatedFilm.getGenres(), contains(Genre.builder().id(2).name("Драма").build(),
+                Genre.builder().id(3).name("Мультфильм").build()));
+        assertThat("Ответ на обновление расходится с сохраненным фильмом",
+                updatedFilm, equalTo(filmStorage.getFilmById(film.getId(), FilmField.withoutLikes())));
+
+        Film brokenFilm = Film.builder()
+                .id(film.getId())
+                .name("brokenFilm1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(2).build())
+                .genres(List.of(Genre.builder().id(1).build(), Genre.builder().id(99).build()))
+                .build();
+        Assertions.assertThrows(DataIntegrityViolationException.class, () -> filmStorage.updateFilm(brokenFilm));
+        assertThat("Неудачное обновление не откатилось",
+                filmStorage.getFilmById(film.getId(), FilmField.withoutLikes()), equalTo(updatedFilm));
+    }
+
+    @Test
+    void updateFilmWithVersionTest() throws Exception {
+        Film film = filmStorage.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).build())
+                .build());
+        assertThat(film.getVersion(), equalTo(0L));
+        film.setDescription("Edited");
+        assertThat(filmStorage.updateFilm(film).getVersion(), equalTo(1L));
+        film.setDescription("Stale edit");
+        VersionConflictException e = Assertions.assertThrows(
+                VersionConflictException.class, () -> filmStorage.updateFilm(film));
+        assertThat("Film with id 1 was modified, version 0 is outdated", equalTo(e.getMessage()));
+        assertThat(filmStorage.getFilmById(film.getId()).getDescription(), equalTo("Edited"));
+
+        // Из двух редакторов, прочитавших версию 1, сохраняет изменения ровно один
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Film> edits = List.of(filmStorage.getFilmById(film.getId()), filmStorage.getFilmById(film.getId()));
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Film edit = edits.get(i);
+            edit.setDescription("Editor" + i);
+            results.add(executor.submit(() -> {
+                try {
+                    filmStorage.updateFilm(edit);
+                    return true;
+                } catch (VersionConflictException conflict) {
+                    return false;
+                }
+            }));
+        }
+        int saved = 0;
+        for (Future<Boolean> result : results) {
+            saved += result.get() ? 1 : 0;
+        }
+        executor.shutdown();
+        assertThat("Конкурирующие правки не исключили друг друга", saved, equalTo(1));
+        assertThat(filmStorage.getFilmById(film.getId()).getVersion(), equalTo(2L));
+
+        film.setVersion(null);
+        assertThat("Обновление без версии не применилось", filmStorage.updateFilm(film).getVersion(), equalTo(3L));
+        assertThat(ETags.parseIfMatch("W/\"3\""), equalTo(3L));
+        assertThat(ETags.parseIfMatch("*"), nullValue());
+    }
+
+    @Test
+    void updateUserWithVersionTest() {
+        User user = userStorage.addUser(User.builder()
+                .email("user1@yandex.ru")
+                .login("user1")
+                .name("User1")
+                .birthday(LocalDate.of(1991, 1, 1))
+                .build());
+        assertThat(user.getVersion(), equalTo(0L));
+        user.setName("Edited");
+        assertThat(userStorage.updateUser(user).getVersion(), equalTo(1L));
+        user.setName("Stale edit");
+        Assertions.assertThrows(VersionConflictException.class, () -> userStorage.updateUser(user));
+        assertThat(userStorage.getUserById(user.getId()).getName(), equalTo("Edited"));
+        user.setId(999);
+        Assertions.assertThrows(ObjectNotFoundException.class, () -> userStorage.updateUser(user));
     }
 
     @Test
@@ -379,6 +700,40 @@ class FilmorateApplicationTests {
         assertThat(addFilm, equalTo(filmStorage.getFilmById(addFilm.getId())));
     }
 
+    @Test
+    void searchFilmsTest() {
+        Film film1 = Film.builder()
+                .name("Психо")
+                .description("Американский психологический хоррор 1960 года.")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).name("G").build())
+                .build();
+        Film film2 = Film.builder()
+                .name("Vertigo")
+                .description("Психологический триллер, Ёлки и psycho thriller.")
+                .releaseDate(LocalDate.of(1958, 1, 1))
+                .duration(128)
+                .mpa(Mpa.builder().id(1).name("G").build())
+                .build();
+        Film addFilm1 = filmStorage.addFilm(film1);
+        Film addFilm2 = filmStorage.addFilm(film2);
+        searchIndex.load();
+        assertThat("Поиск по названию и описанию отличается от [1, 2]",
+                searchIndex.search("ПСИХО психологический", 10, filmId -> 0),
+                contains(addFilm1.getId(), addFilm2.getId()));
+        assertThat("Поиск по латинице отличается от [2]",
+                searchIndex.search("Thriller!", 10, filmId -> 0), contains(addFilm2.getId()));
+        assertThat("Поиск с ё отличается от [2]",
+                searchIndex.search("елки", 10, filmId -> 0), contains(addFilm2.getId()));
+        assertThat("Поиск с равной релевантностью не упорядочен по лайкам",
+                searchIndex.search("психологический", 10, filmId -> filmId == addFilm2.getId() ? 5 : 0),
+                contains(addFilm2.getId(), addFilm1.getId()));
+        addFilm2.setDescription("Триллер");
+        searchIndex.index(addFilm2);
+        assertThat("Индекс не обновлен", searchIndex.search("psycho", 10, filmId -> 0), empty());
+    }
+
     @Test
     void getLikesByEmptyTest() {
         Collection<Long> likes = likesStorage.getListOfLikes(1);
@@ -508,6 +863,555 @@ class FilmorateApplicationTests {
                 likesStorage.getTheBestFilms(5), contains(addFilm1.getId(), addFilm2.getId()));
         assertThat("Список лучших фильмов отличается от [1]",
                 likesStorage.getTheBestFilms(1), hasItem(addFilm1.getId()));
+        likesStorage.unlike(addFilm1.getId(), addUser1.getId());
+        likesStorage.unlike(addFilm1.getId(), addUser2.getId());
+        likesStorage.addLike(addFilm2.getId(), addUser1.getId());
+        assertThat("Список лучших фильмов отличается от [2, 1]",
+                likesStorage.getTheBestFilms(5), contains(addFilm2.getId(), addFilm1.getId()));
+        assertThat("Счетчик лайков Film2 не обновлен", getLikesCount(addFilm2.getId()), equalTo(1L));
+    }
+
+    @Test
+    void getTheBestFilmsFromSnapshotTest() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            films.add(filmStorage.addFilm(Film.builder()
+                    .name("Film" + i)
+                    .description("Description" + i)
+                    .releaseDate(LocalDate.of(1960, 1, 1))
+                    .duration(109)
+                    .mpa(Mpa.builder().id(1).build())
+                    .build()));
+        }
+        User user = userStorage.addUser(User.builder()
+                .email("user1@yandex.ru")
+                .login("user1")
+                .name("User1")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        likesStorage.addLike(films.get(1).getId(), user.getId());
+        popularSnapshot.refresh();
+        assertThat(filmService.getTheBestFilms(2, null, null).stream().map(Film::getId).collect(Collectors.toList()),
+                contains(films.get(1).getId(), films.get(0).getId()));
+
+        likesStorage.unlike(films.get(1).getId(), user.getId());
+        likesStorage.addLike(films.get(2).getId(), user.getId());
+        assertThat("Срез не взят из готового снимка", filmService.getTheBestFilms(1, null, null).get(0).getId(),
+                equalTo(films.get(1).getId()));
+        popularSnapshot.refresh();
+        assertThat("Снимок не пересчитан", filmService.getTheBestFilms(1, null, null).get(0).getId(),
+                equalTo(films.get(2).getId()));
+        assertThat("Запрос больше снимка вернул не все фильмы", filmService.getTheBestFilms(50, null, null),
+                hasSize(3));
+    }
+
+    @Test
+    void getRecommendationsTest() {
+        User user1 = userStorage.addUser(User.builder()
+                .email("user1@yandex.ru")
+                .login("user1")
+                .name("User1")
+                .birthday(LocalDate.of(1991, 1, 1))
+                .build());
+        User user2 = userStorage.addUser(User.builder()
+                .email("user2@yandex.ru")
+                .login("user2")
+                .name("User2")
+                .birthday(LocalDate.of(1992, 1, 1))
+                .build());
+        List<Film> films = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            films.add(filmStorage.addFilm(Film.builder()
+                    .name("Film" + i)
+                    .description("Description" + i)
+                    .releaseDate(LocalDate.of(1960 + i, 1, 1))
+                    .duration(100)
+                    .mpa(Mpa.builder().id(1).name("G").build())
+                    .build()));
+        }
+        likesStorage.addLike(films.get(0).getId(), user1.getId());
+        likesStorage.addLike(films.get(0).getId(), user2.getId());
+        likesStorage.addLike(films.get(1).getId(), user2.getId());
+        coOccurrenceIndex.load();
+        assertThat("Все лайки не загружены", likesStorage.getAllLikes(), hasSize(3));
+        assertThat("Рекомендации User1 отличаются от [2]",
+                coOccurrenceIndex.recommend(user1.getId(), 10), contains(films.get(1).getId()));
+        coOccurrenceIndex.addLike(films.get(2).getId(), user2.getId());
+        coOccurrenceIndex.unlike(films.get(1).getId(), user2.getId());
+        assertThat("Рекомендации User1 отличаются от [3]",
+                coOccurrenceIndex.recommend(user1.getId(), 10), contains(films.get(2).getId()));
+        assertThat("Рекомендации User2 не пусты", coOccurrenceIndex.recommend(user2.getId(), 10), empty());
+    }
+
+    @Test
+    void getTheBestFilmsByGenreAndYearTest() {
+        Genre comedy = Genre.builder().id(1).name("Комедия").build();
+        Genre drama = Genre.builder().id(2).name("Драма").build();
+        Film film1 = filmStorage.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).name("G").build())
+                .genres(List.of(drama))
+                .build());
+        Film film2 = filmStorage.addFilm(Film.builder()
+                .name("Film2")
+                .description("Description2")
+                .releaseDate(LocalDate.of(1960, 6, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).name("G").build())
+                .genres(List.of(comedy, drama))
+                .build());
+        Film film3 = filmStorage.addFilm(Film.builder()
+                .name("Film3")
+                .description("Description3")
+                .releaseDate(LocalDate.of(1961, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).name("G").build())
+                .genres(List.of(comedy))
+                .build());
+        leaderboards.load();
+        leaderboards.addLike(film2.getId());
+        leaderboards.addLike(film3.getId());
+        leaderboards.addLike(film3.getId());
+        assertThat("Рейтинг драм отличается от [2, 1]",
+                leaderboards.getTheBestFilms(10, 2, null), contains(film2.getId(), film1.getId()));
+        assertThat("Рейтинг 1960 года отличается от [2]",
+                leaderboards.getTheBestFilms(1, null, 1960), contains(film2.getId()));
+        assertThat("Рейтинг комедий 1961 года отличается от [3]",
+                leaderboards.getTheBestFilms(10, 1, 1961), contains(film3.getId()));
+        leaderboards.unlike(film2.getId());
+        film1.setReleaseDate(LocalDate.of(1961, 1, 1));
+        leaderboards.updateFilm(film1);
+        assertThat("Рейтинг 1961 года отличается от [3, 1]",
+                leaderboards.getTheBestFilms(10, null, 1961), contains(film3.getId(), film1.getId()));
+        assertThat("Рейтинг драм 1960 года отличается от [2]",
+                leaderboards.getTheBestFilms(10, 2, 1960), contains(film2.getId()));
+        assertThat("Рейтинг боевиков не пуст", leaderboards.getTheBestFilms(10, 6, null), empty());
+    }
+
+    @Test
+    void getLikesSinceTest() {
+        User user1 = userStorage.addUser(User.builder()
+                .email("user1@yandex.ru")
+                .login("user1")
+                .name("User1")
+                .birthday(LocalDate.of(1991, 1, 1))
+                .build());
+        Film film1 = filmStorage.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).name("G").build())
+                .build());
+        likesStorage.addLike(film1.getId(), user1.getId());
+        assertThat("Лайк за последний час не найден",
+                likesStorage.getLikesSince(LocalDateTime.now().minusHours(1)), hasSize(1));
+        assertThat("Найден лайк из будущего",
+                likesStorage.getLikesSince(LocalDateTime.now().plusHours(1)), empty());
+        trendingCounters.load();
+        assertThat("Лайк не попал в тренды за час",
+                trendingCounters.getTrending(TrendingCounters.Window.HOUR, 10), contains(film1.getId()));
+    }
+
+    @Test
+    void trendingUpdatedFromEventBusTest() throws InterruptedException {
+        trendingCounters.advance(Instant.now().plus(Duration.ofDays(8)));
+        trendingCounters.advance(Instant.now());
+        User user = userService.addUser(User.builder()
+                .email("user@yandex.ru")
+                .login("loginUser2022")
+                .name("User")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        Film film = filmService.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).name("G").build())
+                .build());
+        filmService.addLike(film.getId(), user.getId());
+        assertThat(eventBus.flush(10_000), is(true));
+        assertThat("Лайк не попал в тренды через шину событий",
+                trendingCounters.getTrending(TrendingCounters.Window.HOUR, 10), contains(film.getId()));
+        assertThat("Лайк не попал в рейтинг сразу после публикации",
+                leaderboards.getTheBestFilms(10, null, 1960), contains(film.getId()));
+    }
+
+    @Test
+    void trendingUnlikeFromEventBusTest() throws InterruptedException {
+        trendingCounters.advance(Instant.now().plus(Duration.ofDays(8)));
+        trendingCounters.advance(Instant.now());
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            users.add(userService.addUser(User.builder()
+                    .email("user" + i + "@yandex.ru")
+                    .login("loginUser" + i)
+                    .name("User" + i)
+                    .birthday(LocalDate.of(1990, 1, i))
+                    .build()));
+        }
+        List<Film> films = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            films.add(filmService.addFilm(Film.builder()
+                    .name("Film" + i)
+                    .description("Description" + i)
+                    .releaseDate(LocalDate.of(1960, 1, i))
+                    .duration(109)
+                    .mpa(Mpa.builder().id(1).name("G").build())
+                    .build()));
+        }
+        long film1 = films.get(0).getId();
+        long film2 = films.get(1).getId();
+        long user1 = users.get(0).getId();
+        filmService.addLike(film2, user1);
+        filmService.addLike(film2, users.get(1).getId());
+        filmService.addLike(film1, user1);
+        for (int i = 0; i < 5; i++) {
+            filmService.unlike(film1, user1);
+            filmService.addLike(film1, user1);
+        }
+        filmService.applyLikes(List.of(
+                LikeBatchItem.builder().filmId(film1).userId(user1).operation(Operation.REMOVE).build(),
+                LikeBatchItem.builder().filmId(film1).userId(user1).operation(Operation.ADD).build(),
+                LikeBatchItem.builder().filmId(film1).userId(user1).operation(Operation.REMOVE).build(),
+                LikeBatchItem.builder().filmId(film1).userId(user1).operation(Operation.ADD).build()));
+        assertThat(eventBus.flush(10_000), is(true));
+        assertThat("Повторные лайк и снятие накрутили тренд",
+                trendingCounters.getTrending(TrendingCounters.Window.HOUR, 10), contains(film2, film1));
+        filmService.unlike(film2, user1);
+        filmService.unlike(film2, users.get(1).getId());
+        filmService.unlike(film1, user1);
+        assertThat(eventBus.flush(10_000), is(true));
+        assertThat("Фильм без лайков остался в трендах",
+                trendingCounters.getTrending(TrendingCounters.Window.WEEK, 10), empty());
+    }
+
+    @Test
+    void getTrendingFilmsTest() {
+        trendingCounters.advance(Instant.now().plus(Duration.ofDays(8)));
+        Instant now = Instant.parse("2022-10-01T12:00:00Z");
+        trendingCounters.advance(now);
+        trendingCounters.addLike(1, now.minus(Duration.ofDays(3)));
+        trendingCounters.addLike(1, now.minus(Duration.ofDays(3)));
+        trendingCounters.addLike(1, now.minus(Duration.ofDays(3)));
+        trendingCounters.addLike(2, now.minus(Duration.ofHours(5)));
+        trendingCounters.addLike(2, now.minus(Duration.ofHours(5)));
+        trendingCounters.addLike(3, now.minus(Duration.ofMinutes(10)));
+        trendingCounters.addLike(4, now.minus(Duration.ofMinutes(20)));
+        trendingCounters.unlike(4, now.minus(Duration.ofMinutes(20)));
+        trendingCounters.unlike(5, now.minus(Duration.ofMinutes(20)));
+        assertThat(trendingCounters.getTrending(TrendingCounters.Window.WEEK, 10), contains(1L, 2L, 3L));
+        assertThat(trendingCounters.getTrending(TrendingCounters.Window.DAY, 10), contains(2L, 3L));
+        assertThat(trendingCounters.getTrending(TrendingCounters.Window.HOUR, 10), contains(3L));
+        trendingCounters.advance(now.plus(Duration.ofHours(20)));
+        assertThat(trendingCounters.getTrending(TrendingCounters.Window.DAY, 10), contains(3L));
+        assertThat(trendingCounters.getTrending(TrendingCounters.Window.HOUR, 10), empty());
+        trendingCounters.advance(now.plus(Duration.ofDays(5)));
+        assertThat(trendingCounters.getTrending(TrendingCounters.Window.WEEK, 10), contains(2L, 3L));
+        ValidationException e = Assertions.assertThrows(
+                ValidationException.class, () -> TrendingCounters.Window.fromString("2h"));
+        assertThat("Unknown trending window 2h, expected 1h, 24h or 7d", equalTo(e.getMessage()));
+    }
+
+    @Test
+    void getFeedTest() {
+        User user1 = userStorage.addUser(User.builder()
+                .email("user1@yandex.ru")
+                .login("loginUser1")
+                .name("User1")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        User user2 = userStorage.addUser(User.builder()
+                .email("user2@yandex.ru")
+                .login("loginUser2")
+                .name("User2")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        feedTailBuffer.load();
+        feedService.addEvent(user1.getId(), EventType.FRIEND, Operation.ADD, user2.getId());
+        feedService.addEvent(user2.getId(), EventType.FRIEND, Operation.ADD, user1.getId());
+        feedService.addEvent(null, EventType.FILM, Operation.UPDATE, 1);
+        feedService.addEvent(user1.getId(), EventType.LIKE, Operation.ADD, 1);
+
+        List<Event> firstPage = feedService.getFeed(user1.getId(), 0, 1);
+        assertThat(firstPage, hasSize(1));
+        assertThat(firstPage.get(0).getEventType(), equalTo(EventType.FRIEND));
+        assertThat(firstPage.get(0).getEntityId(), equalTo(user2.getId()));
+        List<Event> secondPage = feedService.getFeed(user1.getId(), firstPage.get(0).getEventId(), 10);
+        assertThat(secondPage, hasSize(1));
+        assertThat(secondPage.get(0).getEventType(), equalTo(EventType.LIKE));
+        assertThat(feedService.getFeed(user1.getId(), secondPage.get(0).getEventId(), 10), empty());
+        assertThat("Хвост в памяти расходится с журналом в БД",
+                feedService.getFeed(user1.getId(), 0, 10), equalTo(eventStorage.getFeed(user1.getId(), 0, 10)));
+
+        for (int i = 0; i < 60; i++) {
+            feedService.addEvent(user2.getId(), EventType.LIKE, i % 2 == 0 ? Operation.ADD : Operation.REMOVE, 1);
+        }
+        List<Event> fullFeed = feedService.getFeed(user2.getId(), 0, 100);
+        assertThat("Вытесненные из хвоста события не дочитаны из БД", fullFeed, hasSize(61));
+        for (int i = 1; i < fullFeed.size(); i++) {
+            assertThat(fullFeed.get(i).getEventId(), greaterThan(fullFeed.get(i - 1).getEventId()));
+        }
+        assertThat(feedService.getFeed(user2.getId(), fullFeed.get(30).getEventId(), 100),
+                equalTo(fullFeed.subList(31, 61)));
+        Assertions.assertThrows(ObjectNotFoundException.class, () -> feedService.getFeed(999, 0, 10));
+    }
+
+    @Test
+    void applyLikesBatchTest() {
+        User user1 = userStorage.addUser(User.builder()
+                .email("user1@yandex.ru")
+                .login("user1")
+                .name("User1")
+                .birthday(LocalDate.of(1991, 1, 1))
+                .build());
+        User user2 = userStorage.addUser(User.builder()
+                .email("user2@yandex.ru")
+                .login("user2")
+                .name("User2")
+                .birthday(LocalDate.of(1992, 1, 1))
+                .build());
+        Film film = filmStorage.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder().id(1).name("G").build())
+                .build());
+        likesStorage.addLike(film.getId(), user2.getId());
+        List<BatchItemResult> results = filmService.applyLikes(List.of(
+                LikeBatchItem.builder().filmId(film.getId()).userId(user1.getId()).operation(Operation.ADD).build(),
+                LikeBatchItem.builder().filmId(film.getId()).userId(user1.getId()).operation(Operation.ADD).build(),
+                LikeBatchItem.builder().filmId(film.getId()).userId(user2.getId()).operation(Operation.REMOVE).build(),
+                LikeBatchItem.builder().filmId(film.getId()).userId(user2.getId()).operation(Operation.REMOVE).build(),
+                LikeBatchItem.builder().filmId(999).userId(user1.getId()).operation(Operation.ADD).build(),
+                LikeBatchItem.builder().filmId(film.getId()).userId(999).operation(Operation.REMOVE).build(),
+                LikeBatchItem.builder().filmId(film.getId()).userId(user1.getId()).operation(Operation.UPDATE).build()));
+        assertThat(results.stream().map(BatchItemResult::getStatus).collect(Collectors.toList()), contains(
+                BatchStatus.APPLIED, BatchStatus.UNCHANGED, BatchStatus.APPLIED, BatchStatus.UNCHANGED,
+                BatchStatus.NOT_FOUND, BatchStatus.NOT_FOUND, BatchStatus.INVALID));
+        assertThat(results.get(4).getMessage(), equalTo("Film with id 999 not found"));
+        assertThat(results.get(5).getMessage(), equalTo("User with id 999 not found"));
+        assertThat(likesStorage.getListOfLikes(film.getId()), contains(user1.getId()));
+        assertThat("Счетчик лайков не учел пакет", getLikesCount(film.getId()), equalTo(1L));
+        assertThat(feedService.getFeed(user2.getId(), 0, 10).stream()
+                .map(Event::getOperation)
+                .collect(Collectors.toList()), contains(Operation.REMOVE));
+        Assertions.assertThrows(ValidationException.class, () -> filmService.applyLikes(List.of()));
+    }
+
+    @Test
+    void filmUpdateInLikersFeedTest() {
+        User user1 = userService.addUser(User.builder()
+                .email("user1@yandex.ru")
+                .login("user1")
+                .name("User1")
+                .birthday(LocalDate.of(1991, 1, 1))
+                .build());
+        User user2 = userService.addUser(User.builder()
+                .email("user2@yandex.ru")
+                .login("user2")
+                .name("User2")
+                .birthday(LocalDate.of(1992, 1, 1))
+                .build());
+        Film film = filmService.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder().id(1).build())
+                .build());
+        filmService.addLike(film.getId(), user1.getId());
+        film.setDescription("Description2");
+        assertThat("Ответ на обновление без числа лайков", filmService.updateFilm(film).getLikesCount(), equalTo(1L));
+
+        List<Event> feed = feedService.getFeed(user1.getId(), 0, 10);
+        assertThat(feed, hasSize(2));
+        assertThat(feed.get(1).getEventType(), equalTo(EventType.FILM));
+        assertThat(feed.get(1).getOperation(), equalTo(Operation.UPDATE));
+        assertThat(feed.get(1).getEntityId(), equalTo(film.getId()));
+        assertThat("Обновление попало в ленту пользователя без лайка", feedService.getFeed(user2.getId(), 0, 10),
+                empty());
+    }
+
+    @Test
+    void applyFriendsBatchTest() {
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            users.add(userStorage.addUser(User.builder()
+                    .email("user" + i + "@yandex.ru")
+                    .login("user" + i)
+                    .name("User" + i)
+                    .birthday(LocalDate.of(1990 + i, 1, 1))
+                    .build()));
+        }
+        long userId = users.get(0).getId();
+        List<BatchItemResult> results = userService.applyFriends(userId, List.of(
+                FriendBatchItem.builder().friendId(users.get(1).getId()).operation(Operation.ADD).build(),
+                FriendBatchItem.builder().friendId(users.get(2).getId()).operation(Operation.ADD).build(),
+                FriendBatchItem.builder().friendId(users.get(2).getId()).operation(Operation.REMOVE).build(),
+                FriendBatchItem.builder().friendId(users.get(2).getId()).operation(Operation.REMOVE).build(),
+                FriendBatchItem.builder().friendId(999).operation(Operation.ADD).build()));
+        assertThat(results.stream().map(BatchItemResult::getStatus).collect(Collectors.toList()), contains(
+                BatchStatus.APPLIED, BatchStatus.APPLIED, BatchStatus.APPLIED, BatchStatus.UNCHANGED,
+                BatchStatus.NOT_FOUND));
+        assertThat(friendsStorage.getListOfFriends(userId), contains(users.get(1).getId()));
+        Assertions.assertThrows(ObjectNotFoundException.class, () -> userService.applyFriends(999, List.of(
+                FriendBatchItem.builder().friendId(userId).operation(Operation.ADD).build())));
+    }
+
+    @Test
+    void getFilmsByIdsTest() {
+        User user = userStorage.addUser(User.builder()
+                .email("user1@yandex.ru")
+                .login("user1")
+                .name("User1")
+                .birthday(LocalDate.of(1991, 1, 1))
+                .build());
+        List<Film> films = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            films.add(filmStorage.addFilm(Film.builder()
+                    .name("Film" + i)
+                    .description("Description" + i)
+                    .releaseDate(LocalDate.of(1960 + i, 1, 1))
+                    .duration(100)
+                    .mpa(Mpa.builder().id(i).build())
+                    .genres(i == 2 ? List.of() : List.of(Genre.builder().id(i + 1).build(),
+                            Genre.builder().id(1).build()))
+                    .build()));
+        }
+        likesStorage.addLike(films.get(0).getId(), user.getId());
+        List<Long> ids = List.of(films.get(2).getId(), films.get(0).getId(), 999L, films.get(1).getId());
+        assertThat("Фильмы по списку id отличаются от загруженных по одному",
+                filmStorage.getFilmsByIds(ids), contains(filmStorage.getFilmById(films.get(2).getId()),
+                        filmStorage.getFilmById(films.get(0).getId()), filmStorage.getFilmById(films.get(1).getId())));
+        assertThat(filmService.getFilmsByIds(ids, EnumSet.allOf(FilmField.class)).get(1).getLikes(), contains(user.getId()));
+        assertThat(filmStorage.getFilmsByIds(List.of()), empty());
+        List<Long> tooManyIds = new ArrayList<>();
+        for (long id = 1; id <= 101; id++) {
+            tooManyIds.add(id);
+        }
+        ValidationException e = Assertions.assertThrows(
+                ValidationException.class, () -> filmService.getFilmsByIds(tooManyIds, EnumSet.allOf(FilmField.class)));
+        assertThat("From 1 to 100 film ids must be requested", equalTo(e.getMessage()));
+    }
+
+    @Test
+    void getFilmsWithFieldsTest() {
+        User user = userStorage.addUser(User.builder()
+                .email("user1@yandex.ru")
+                .login("user1")
+                .name("User1")
+                .birthday(LocalDate.of(1991, 1, 1))
+                .build());
+        Film film = filmStorage.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(3).build())
+                .genres(List.of(Genre.builder().id(2).build()))
+                .build());
+        likesStorage.addLike(film.getId(), user.getId());
+        Set<FilmField> fields = FilmField.parse(List.of("name", "mpa"));
+        assertThat(fields, containsInAnyOrder(FilmField.ID, FilmField.NAME, FilmField.MPA));
+        Film projected = filmStorage.getFilmById(film.getId(), fields);
+        assertThat(projected.getName(), equalTo("Film1"));
+        assertThat(projected.getMpa(), equalTo(Mpa.builder().id(3).name("PG-13").build()));
+        assertThat("Незапрошенные лайки загружены", projected.getLikes(), nullValue());
+        assertThat("Незапрошенные жанры загружены", projected.getGenres(), nullValue());
+        assertThat(projected.getDescription(), nullValue());
+        assertThat(filmStorage.getFilms(fields), contains(projected));
+        assertThat(filmStorage.getFilms(), contains(filmStorage.getFilmById(film.getId())));
+        assertThat(Projections.project(objectMapper, projected, FilmField.jsonNames(fields)).keySet(),
+                containsInAnyOrder("id", "name", "mpa"));
+        ValidationException e = Assertions.assertThrows(
+                ValidationException.class, () -> FilmField.parse(List.of("name", "budget")));
+        assertThat("Unknown film field budget", equalTo(e.getMessage()));
+
+        User projectedUser = userStorage.getUserById(user.getId(), UserField.parse(List.of("login")));
+        assertThat(projectedUser.getLogin(), equalTo("user1"));
+        assertThat("Незапрошенные друзья загружены", projectedUser.getFriends(), nullValue());
+        assertThat(userStorage.getUsers(), contains(userStorage.getUserById(user.getId())));
+        Assertions.assertThrows(ObjectNotFoundException.class,
+                () -> userStorage.getUserById(999, UserField.parse(null)));
+    }
+
+    @Test
+    void getLikesPageTest() {
+        Film film = filmStorage.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).build())
+                .build());
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            User user = userStorage.addUser(User.builder()
+                    .email("user" + i + "@yandex.ru")
+                    .login("user" + i)
+                    .name("User" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+            userIds.add(user.getId());
+            likesStorage.addLike(film.getId(), user.getId());
+        }
+        List<Long> firstPage = likesStorage.getListOfLikes(film.getId(), 0, 2);
+        assertThat(firstPage, contains(userIds.get(0), userIds.get(1)));
+        List<Long> secondPage = likesStorage.getListOfLikes(film.getId(), firstPage.get(1), 10);
+        assertThat(secondPage, contains(userIds.get(2), userIds.get(3), userIds.get(4)));
+        assertThat(likesStorage.getListOfLikes(film.getId(), secondPage.get(2), 10), empty());
+
+        Film withCount = filmStorage.getFilmById(film.getId(), FilmField.parse(List.of("name", "likesCount")));
+        assertThat("Счетчик без сброса в БД не учел лайки", withCount.getLikesCount(), equalTo(5L));
+        assertThat(withCount.getLikes(), nullValue());
+        flushLikesCounters();
+        likesStorage.unlike(film.getId(), userIds.get(0));
+        assertThat(filmStorage.getFilmById(film.getId()).getLikesCount(), equalTo(4L));
+        assertThat(filmStorage.getFilmsByIds(List.of(film.getId())).get(0).getLikesCount(), equalTo(4L));
+    }
+
+    @Test
+    void getFriendsPageTest() {
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            users.add(userStorage.addUser(User.builder()
+                    .email("user" + i + "@yandex.ru")
+                    .login("user" + i)
+                    .name("User" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()));
+        }
+        long userId = users.get(0).getId();
+        long otherId = users.get(1).getId();
+        for (int i = 2; i < 5; i++) {
+            friendsStorage.addAsFriend(userId, users.get(i).getId());
+            friendsStorage.addAsFriend(users.get(i).getId(), userId);
+        }
+        friendsStorage.addAsFriend(otherId, users.get(3).getId());
+        friendsStorage.addAsFriend(otherId, users.get(4).getId());
+
+        Set<UserField> fields = EnumSet.complementOf(EnumSet.of(UserField.FRIENDS));
+        List<User> firstPage = userService.getListOfFriends(userId, 0, 2, fields);
+        assertThat(firstPage.stream().map(User::getId).collect(Collectors.toList()),
+                contains(users.get(2).getId(), users.get(3).getId()));
+        assertThat("Вложенные списки друзей загружены без запроса", firstPage.get(0).getFriends(), nullValue());
+        assertThat(firstPage.get(0).getLogin(), equalTo("user3"));
+        List<User> secondPage = userService.getListOfFriends(userId, firstPage.get(1).getId(), 2, fields);
+        assertThat(secondPage.stream().map(User::getId).collect(Collectors.toList()),
+                contains(users.get(4).getId()));
+
+        List<User> mutual = userService.getAListOfMutualFriends(userId, otherId, users.get(3).getId(), 10,
+                EnumSet.allOf(UserField.class));
+        assertThat(mutual.stream().map(User::getId).collect(Collectors.toList()), contains(users.get(4).getId()));
+        assertThat(mutual.get(0).getFriends(), contains(userId));
+        Assertions.assertThrows(ObjectNotFoundException.class, () -> userService.getListOfFriends(999, 0, 10,
+                fields));
     }
 
     @Test
@@ -619,4 +1523,20 @@ class FilmorateApplicationTests {
         assertThat(mpaStorage.getMpaById(1), equalTo(mpa1));
         assertThat(mpaStorage.getMpaById(5), equalTo(mpa5));
     }
-}
\ No newline at end of file
+
+    // Счетчик лайков фильма в том виде, в каком его видит хранилище режима
+    protected long getLikesCount(long filmId) {
+        return filmStorage.getFilmById(filmId, EnumSet.of(FilmField.LIKES_COUNT)).getLikesCount();
+    }
+
+    protected void flushLikesCounters() {
+        likesCounters.ifAvailable(FilmLikesCounters::flush);
+    }
+
+    protected void flushWriteBehind() throws InterruptedException {
+        WriteBehindQueue queue = writeBehindQueue.getIfAvailable();
+        if (queue != null) {
+            assertThat("Очередь отложенной записи не опустела", queue.flush(10_000), is(true));
+        }
+    }
+}
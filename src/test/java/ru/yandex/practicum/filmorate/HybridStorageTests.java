@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.hybrid.HybridStorageLoader;
+import ru.yandex.practicum.filmorate.storage.inMemory.InMemoryDatabase;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@TestPropertySource(properties = "filmorate.storage.mode=hybrid")
+class HybridStorageTests extends FilmorateApplicationTests {
+    @Autowired
+    private InMemoryDatabase database;
+    @Autowired
+    private HybridStorageLoader loader;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+
+    // Счетчик в памяти должен совпадать с колонкой FILMS.LIKES_COUNT, записанной насквозь
+    @Override
+    protected long getLikesCount(long filmId) {
+        long likesCount = super.getLikesCount(filmId);
+        flushLikesCounters();
+        assertThat("Счетчик в памяти расходится с БД", jdbcTemplate.queryForObject(
+                "select LIKES_COUNT from FILMS where FILM_ID = ?", Long.class, filmId), equalTo(likesCount));
+        return likesCount;
+    }
+
+    @Test
+    void reloadFromDatabaseTest() {
+        User user1 = userService.addUser(user(1));
+        User user2 = userService.addUser(user(2));
+        Film film = filmService.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(2).build())
+                .genres(List.of(Genre.builder().id(1).build(), Genre.builder().id(3).build()))
+                .build());
+        userService.addAsFriend(user1.getId(), user2.getId());
+        filmService.addLike(film.getId(), user2.getId());
+        assertThat("Запись не дошла до БД", jdbcTemplate.queryForObject(
+                "select count(*) from LIKES where FILM_ID = ? and USER_ID = ?", Integer.class,
+                film.getId(), user2.getId()), equalTo(1));
+        Film savedFilm = filmStorage.getFilmById(film.getId());
+        User savedUser = userService.getUserById(user1.getId());
+
+        database.clear();
+        assertThat(filmStorage.getFilms(), empty());
+        loader.load();
+        assertThat("Фильм после перезагрузки из БД отличается", filmStorage.getFilmById(film.getId()),
+                equalTo(savedFilm));
+        assertThat(savedFilm.getLikes(), contains(user2.getId()));
+        assertThat("Пользователь после перезагрузки из БД отличается",
+                userService.getUserById(user1.getId(), EnumSet.allOf(UserField.class)), equalTo(savedUser));
+        assertThat(savedUser.getFriends(), contains(user2.getId()));
+        User user3 = userService.addUser(user(3));
+        assertThat("Счетчик id в памяти разошелся с БД", user3.getId(), equalTo(3L));
+    }
+
+    private User user(int i) {
+        return User.builder()
+                .email("user" + i + "@yandex.ru")
+                .login("user" + i)
+                .name("User" + i)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dal.LikesStorage;
+import ru.yandex.practicum.filmorate.storage.dal.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+@TestPropertySource(properties = "filmorate.storage.mode=jdbc")
+class JdbcStorageTests extends FilmorateApplicationTests {
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private LikesStorage likesStorage;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Счетчик проверяется по колонке FILMS.LIKES_COUNT после сброса приращений
+    @Override
+    protected long getLikesCount(long filmId) {
+        flushLikesCounters();
+        return jdbcTemplate.queryForObject("select LIKES_COUNT from FILMS where FILM_ID = ?", Long.class, filmId);
+    }
+
+    @Test
+    void getTheBestFilmsWithPendingCountersTest() {
+        for (int i = 1; i <= 2; i++) {
+            userStorage.addUser(User.builder()
+                    .email("user" + i + "@yandex.ru")
+                    .login("loginUser" + i)
+                    .name("User" + i)
+                    .birthday(LocalDate.of(1990, 1, i))
+                    .build());
+            filmStorage.addFilm(Film.builder()
+                    .name("Film" + i)
+                    .description("Description" + i)
+                    .releaseDate(LocalDate.of(1960, 1, i))
+                    .duration(109)
+                    .mpa(Mpa.builder().id(1).build())
+                    .build());
+        }
+        filmStorage.addFilm(Film.builder()
+                .name("Film3")
+                .description("Description3")
+                .releaseDate(LocalDate.of(1960, 1, 3))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).build())
+                .build());
+        likesStorage.addLike(1, 1);
+        likesStorage.addLike(1, 2);
+        likesStorage.addLike(2, 1);
+        flushLikesCounters();
+        likesStorage.unlike(1, 1);
+        likesStorage.unlike(1, 2);
+        likesStorage.addLike(3, 1);
+        assertThat(likesStorage.getTheBestFilms(1), contains(2L));
+        assertThat(likesStorage.getTheBestFilms(2), contains(2L, 3L));
+        assertThat(likesStorage.getTheBestFilms(3), contains(2L, 3L, 1L));
+        flushLikesCounters();
+        assertThat(likesStorage.getTheBestFilms(3), contains(2L, 3L, 1L));
+    }
+
+    @Test
+    void applyLikesRollbackKeepsCountersTest() {
+        userStorage.addUser(User.builder()
+                .email("user@yandex.ru")
+                .login("loginUser")
+                .name("User")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        filmStorage.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).build())
+                .build());
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            likesStorage.applyLikes(List.of(
+                    LikeBatchItem.builder().filmId(1).userId(1).operation(Operation.ADD).build()));
+            status.setRollbackOnly();
+        });
+        assertThat("Лайк из отмененной транзакции попал в счетчик", getLikesCount(1), equalTo(0L));
+        likesStorage.applyLikes(List.of(
+                LikeBatchItem.builder().filmId(1).userId(1).operation(Operation.ADD).build()));
+        assertThat(getLikesCount(1), equalTo(1L));
+    }
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "filmorate.storage.mode=memory")
+class MemoryStorageTests extends FilmorateApplicationTests {
+}
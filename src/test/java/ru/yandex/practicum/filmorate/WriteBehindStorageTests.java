@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.hybrid.HybridStorageLoader;
+import ru.yandex.practicum.filmorate.storage.inMemory.InMemoryDatabase;
+import ru.yandex.practicum.filmorate.storage.writebehind.WriteBehindQueue;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@TestPropertySource(properties = "filmorate.storage.mode=write-behind")
+class WriteBehindStorageTests extends FilmorateApplicationTests {
+    @Autowired
+    private InMemoryDatabase database;
+    @Autowired
+    private HybridStorageLoader loader;
+    @Autowired
+    private WriteBehindQueue queue;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+
+    // После записи очереди колонка FILMS.LIKES_COUNT должна совпасть со счетчиком в памяти
+    @Override
+    protected long getLikesCount(long filmId) {
+        long likesCount = super.getLikesCount(filmId);
+        try {
+            flushWriteBehind();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        assertThat("Счетчик в памяти расходится с БД", jdbcTemplate.queryForObject(
+                "select LIKES_COUNT from FILMS where FILM_ID = ?", Long.class, filmId), equalTo(likesCount));
+        return likesCount;
+    }
+
+    @Test
+    void writeBehindPersistenceTest() throws InterruptedException {
+        User user1 = userService.addUser(user(1));
+        User user2 = userService.addUser(user(2));
+        Film film = filmService.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(2).build())
+                .genres(List.of(Genre.builder().id(1).build(), Genre.builder().id(3).build()))
+                .build());
+        filmService.updateFilm(Film.builder()
+                .id(film.getId())
+                .name("Film1")
+                .description("Edited")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(2).build())
+                .genres(List.of(Genre.builder().id(2).build()))
+                .build());
+        userService.addAsFriend(user1.getId(), user2.getId());
+        filmService.addLike(film.getId(), user1.getId());
+        filmService.addLike(film.getId(), user2.getId());
+        filmService.unlike(film.getId(), user1.getId());
+
+        flushWriteBehind();
+        assertThat(queue.snapshot(), allOf(hasEntry("pending", 0L), hasEntry("lagMs", 0L), hasEntry("failed", 0L)));
+        assertThat(queue.snapshot().get("applied"), equalTo(queue.snapshot().get("enqueued")));
+        assertThat(jdbcTemplate.queryForObject("select DESCRIPTION from FILMS where FILM_ID = ?", String.class,
+                film.getId()), equalTo("Edited"));
+        assertThat(jdbcTemplate.queryForList("select GENRE_ID from FILM_GENRE_LINE where FILM_ID = ?", Integer.class,
+                film.getId()), contains(2));
+        assertThat(jdbcTemplate.queryForList("select USER_ID from LIKES where FILM_ID = ?", Long.class,
+                film.getId()), contains(user2.getId()));
+        assertThat("События не записаны в БД", jdbcTemplate.queryForObject("select count(*) from EVENTS",
+                Integer.class), greaterThan(0));
+
+        // Память, загруженная заново из H2, совпадает с той, что была до перезагрузки
+        Film savedFilm = filmStorage.getFilmById(film.getId());
+        User savedUser = userService.getUserById(user1.getId());
+        database.clear();
+        loader.load();
+        assertThat(filmStorage.getFilmById(film.getId()), equalTo(savedFilm));
+        assertThat(userService.getUserById(user1.getId(), EnumSet.allOf(UserField.class)), equalTo(savedUser));
+        assertThat("Счетчик id в памяти разошелся с БД", userService.addUser(user(3)).getId(), equalTo(3L));
+    }
+
+    private User user(int i) {
+        return User.builder()
+                .email("user" + i + "@yandex.ru")
+                .login("user" + i)
+                .name("User" + i)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
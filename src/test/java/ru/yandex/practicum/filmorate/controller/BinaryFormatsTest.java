@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+class BinaryFormatsTest {
+    private static final MediaType CBOR = MediaType.valueOf("application/cbor");
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final ObjectMapper cborMapper = new CBORMapper().findAndRegisterModules();
+    private final ObjectMapper smileMapper = new SmileMapper().findAndRegisterModules();
+
+    @Test
+    void binaryFormatsNegotiationTest() throws Exception {
+        Film film = Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).build())
+                .genres(List.of(Genre.builder().id(2).build()))
+                .build();
+        byte[] created = mockMvc.perform(post("/films")
+                        .contentType(SMILE)
+                        .accept(CBOR)
+                        .content(smileMapper.writeValueAsBytes(film)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        Film saved = cborMapper.readValue(created, Film.class);
+        assertThat(saved.getName(), equalTo("Film1"));
+        assertThat(saved.getReleaseDate(), equalTo(LocalDate.of(1960, 1, 1)));
+        assertThat(saved.getMpa().getName(), equalTo("G"));
+        assertThat(saved.getGenres(), contains(Genre.builder().id(2).name("Драма").build()));
+
+        byte[] json = mockMvc.perform(get("/films"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] smile = mockMvc.perform(get("/films").accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        Film[] jsonFilms = objectMapper.readValue(json, Film[].class);
+        Film[] smileFilms = smileMapper.readValue(smile, Film[].class);
+        assertThat(smileFilms, equalTo(jsonFilms));
+        assertThat("Smile не компактнее JSON", smile.length, lessThan(json.length));
+    }
+
+    @Test
+    void binaryUserAndDictionariesTest() throws Exception {
+        User user = User.builder()
+                .email("user@yandex.ru")
+                .login("loginUser2022")
+                .name("User")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+        byte[] created = mockMvc.perform(post("/users")
+                        .contentType(CBOR)
+                        .accept(CBOR)
+                        .content(cborMapper.writeValueAsBytes(user)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        User saved = cborMapper.readValue(created, User.class);
+        assertThat(saved.getLogin(), equalTo("loginUser2022"));
+        assertThat(saved.getBirthday(), equalTo(LocalDate.of(1990, 1, 1)));
+
+        byte[] genres = mockMvc.perform(get("/genres").accept(CBOR))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(cborMapper.readValue(genres, Genre[].class), arrayWithSize(6));
+        byte[] mpa = mockMvc.perform(get("/mpa").accept(SMILE))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(smileMapper.readValue(mpa, Mpa[].class), arrayWithSize(5));
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+class RequestParamsValidationTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void likesPageParamsValidationTest() throws Exception {
+        long filmId = filmService.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).build())
+                .build()).getId();
+        mockMvc.perform(get("/films/" + filmId + "/likes?limit=1000"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/films/" + filmId + "/likes?limit=5000"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value(400));
+        mockMvc.perform(get("/films/" + filmId + "/likes?limit=-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/" + filmId + "/likes?after=-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void feedPageParamsValidationTest() throws Exception {
+        long userId = userService.addUser(User.builder()
+                .email("feed@yandex.ru")
+                .login("feedUser")
+                .name("Feed")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build()).getId();
+        mockMvc.perform(get("/users/" + userId + "/feed?limit=100"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/users/" + userId + "/feed?limit=101"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/" + userId + "/feed?limit=-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/" + userId + "/feed?after=-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void topCountValidationTest() throws Exception {
+        mockMvc.perform(get("/films/trending?window=24h&count=-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/trending?window=24h&count=1000000000"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/films/popular?count=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/search?q=star&count=-1"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class DomainEventBusTest {
+    private final DomainEventBus eventBus = new DomainEventBus(16);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        eventBus.stop();
+    }
+
+    @Test
+    void syncSubscribersInOrderTest() {
+        List<String> calls = new ArrayList<>();
+        eventBus.subscribe(LikeAdded.class, event -> calls.add("first " + event.getFilmId()));
+        eventBus.subscribe(LikeAdded.class, event -> calls.add("second " + event.getFilmId()));
+        eventBus.subscribe(LikeRemoved.class, event -> calls.add("removed " + event.getFilmId()));
+        eventBus.publish(new LikeAdded(1, 2, Instant.now()));
+        assertThat(calls, contains("first 1", "second 1"));
+        assertThat(eventBus.snapshot().get("published"), equalTo(1L));
+    }
+
+    @Test
+    void failedSubscriberDoesNotStopOthersTest() {
+        List<Long> calls = new ArrayList<>();
+        eventBus.subscribe(FriendAdded.class, event -> {
+            throw new IllegalStateException("Broken subscriber");
+        });
+        eventBus.subscribe(FriendAdded.class, event -> calls.add(event.getFriendId()));
+        eventBus.publish(new FriendAdded(1, 2));
+        assertThat(calls, contains(2L));
+        assertThat(eventBus.snapshot().get("failed"), equalTo(1L));
+    }
+
+    @Test
+    void asyncSubscriberReceivesOrderedBatchesTest() throws InterruptedException {
+        List<Long> received = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch blocked = new CountDownLatch(1);
+        eventBus.<LikeAdded>subscribeAsync("test", List.of(LikeAdded.class), 10, batch -> {
+            try {
+                blocked.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batchSizes.add(batch.size());
+            batch.forEach(event -> received.add(event.getFilmId()));
+        });
+        eventBus.publish(new LikeAdded(0, 1, Instant.now()));
+        Thread publisher = new Thread(() -> LongStream.rangeClosed(1, 100)
+                .forEach(filmId -> eventBus.publish(new LikeAdded(filmId, 1, Instant.now()))));
+        publisher.start();
+        Thread.sleep(100);
+        assertThat("Публикация не ждет места в очереди отставшего подписчика", publisher.isAlive(), is(true));
+        blocked.countDown();
+        publisher.join(10_000);
+        assertThat(eventBus.flush(10_000), is(true));
+        assertThat(received, equalTo(LongStream.rangeClosed(0, 100).boxed().collect(Collectors.toList())));
+        assertThat("События не собирались в пакеты", batchSizes.size(), lessThan(101));
+        assertThat(batchSizes, everyItem(lessThanOrEqualTo(10)));
+        assertThat(eventBus.snapshot().get("test.delivered"), equalTo(101L));
+    }
+
+    @Test
+    void asyncSubscriberKeepsOrderAcrossTypesTest() throws InterruptedException {
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        eventBus.<DomainEvent>subscribeAsync("likes", List.of(LikeAdded.class, LikeRemoved.class), 3,
+                batch -> batch.forEach(event -> received.add(event.getClass().getSimpleName())));
+        Instant now = Instant.now();
+        for (int i = 0; i < 5; i++) {
+            eventBus.publish(new LikeAdded(1, 2, now));
+            eventBus.publish(new LikeRemoved(1, 2, now, now));
+        }
+        assertThat(eventBus.flush(10_000), is(true));
+        assertThat(received, hasSize(10));
+        for (int i = 0; i < received.size(); i++) {
+            assertThat(received.get(i), equalTo(i % 2 == 0 ? "LikeAdded" : "LikeRemoved"));
+        }
+    }
+
+    @Test
+    void publishedAfterCommitTest() {
+        List<Long> calls = new ArrayList<>();
+        eventBus.subscribe(FriendRemoved.class, event -> calls.add(event.getFriendId()));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            eventBus.publish(new FriendRemoved(1, 2));
+            eventBus.publish(new FriendRemoved(1, 3));
+            assertThat("Событие доставлено до фиксации транзакции", calls, empty());
+            List<TransactionSynchronization> synchronizations =
+                    TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(calls, contains(2L, 3L));
+    }
+}
@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.yandex.practicum.filmorate.util.TokenBucket;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class AdmissionControlFilterTest {
+    private final AdmissionMetrics metrics = new AdmissionMetrics();
+
+    @Test
+    void tokenBucketTest() {
+        TokenBucket bucket = new TokenBucket(10, 3, 0);
+        for (int i = 0; i < 3; i++) {
+            assertThat("Всплеск в пределах burst отклонен", bucket.tryAcquire(0), equalTo(0L));
+        }
+        assertThat(bucket.tryAcquire(0), equalTo(100_000_000L));
+        assertThat("Токен не восстановился за интервал", bucket.tryAcquire(100_000_000L), equalTo(0L));
+        assertThat(bucket.isFull(100_000_000L), is(false));
+        assertThat(bucket.isFull(400_000_000L), is(true));
+    }
+
+    @Test
+    void rateLimitPerClientTest() throws Exception {
+        AdmissionControlFilter filter = filter(1, 2, 8);
+        assertThat(call(filter, "10.0.0.1").getStatus(), equalTo(200));
+        assertThat(call(filter, "10.0.0.1").getStatus(), equalTo(200));
+        MockHttpServletResponse rejected = call(filter, "10.0.0.1");
+        assertThat(rejected.getStatus(), equalTo(429));
+        assertThat(rejected.getHeader("Retry-After"), equalTo("1"));
+        assertThat(rejected.getContentAsString(), containsString("Request rate limit exceeded"));
+        assertThat("Лимит одного клиента задел другого", call(filter, "10.0.0.2").getStatus(), equalTo(200));
+        assertThat(metrics.getAdmitted(EndpointClass.LIGHT), equalTo(3L));
+        assertThat(metrics.getRateLimited(EndpointClass.LIGHT), equalTo(1L));
+    }
+
+    @Test
+    void heavyConcurrencyLimitTest() throws Exception {
+        AdmissionControlFilter filter = filter(1000, 1000, 1);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain blocking = (request, response) -> {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> slow = executor.submit(() -> {
+                filter.doFilter(request("/films/popular"), new MockHttpServletResponse(), blocking);
+                return null;
+            });
+            assertThat(entered.await(5, TimeUnit.SECONDS), is(true));
+            MockHttpServletResponse heavy = new MockHttpServletResponse();
+            filter.doFilter(request("/films/search"), heavy, new MockFilterChain());
+            assertThat("Тяжелый запрос сверх лимита не отброшен", heavy.getStatus(), equalTo(429));
+            MockHttpServletResponse light = new MockHttpServletResponse();
+            filter.doFilter(request("/films/1"), light, new MockFilterChain());
+            assertThat("Легкий запрос отброшен из-за тяжелых", light.getStatus(), equalTo(200));
+            release.countDown();
+            slow.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(metrics.getConcurrencyLimited(EndpointClass.HEAVY), equalTo(1L));
+        assertThat(metrics.getAdmitted(EndpointClass.HEAVY), equalTo(1L));
+    }
+
+    @Test
+    void endpointClassTest() {
+        assertThat(EndpointClass.of(request("/films")), equalTo(EndpointClass.HEAVY));
+        MockHttpServletRequest byIds = request("/films");
+        byIds.setParameter("ids", "1,2");
+        assertThat(EndpointClass.of(byIds), equalTo(EndpointClass.LIGHT));
+        assertThat(EndpointClass.of(request("/users/1/recommendations")), equalTo(EndpointClass.HEAVY));
+        assertThat(EndpointClass.of(request("/users/1/friends")), equalTo(EndpointClass.LIGHT));
+        assertThat(EndpointClass.of(request("/users/1/friends/common/2")), equalTo(EndpointClass.HEAVY));
+        assertThat(EndpointClass.of(request("/users/1/friends/common")), equalTo(EndpointClass.HEAVY));
+        MockHttpServletRequest batch = request("/films/likes:batch");
+        batch.setMethod("POST");
+        assertThat(EndpointClass.of(batch), equalTo(EndpointClass.HEAVY));
+    }
+
+    private AdmissionControlFilter filter(double rate, int burst, int heavyConcurrency) {
+        return new AdmissionControlFilter(new ObjectMapper(), metrics, true, rate, burst, 100, "",
+                64, heavyConcurrency);
+    }
+
+    private MockHttpServletResponse call(AdmissionControlFilter filter, String remoteAddr) throws Exception {
+        MockHttpServletRequest request = request("/films/1");
+        request.setRemoteAddr(remoteAddr);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private MockHttpServletRequest request(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+}
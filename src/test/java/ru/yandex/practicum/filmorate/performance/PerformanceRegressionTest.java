@@ -0,0 +1,268 @@
+package ru.yandex.practicum.filmorate.performance;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.dao.FilmLikesCounters;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsSnapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Бюджеты горячих эндпоинтов на наборе данных среднего размера. Число SQL-запросов и выделенная память
+// проверяются в каждой сборке, p95 задержки - только в профиле: mvn test -Pperformance.
+// Базовая линия лежит в performance-baseline.properties; после осознанного изменения она пересчитывается
+// запуском с -Dperformance.write-baseline=true и копируется из target/performance-baseline.properties
+@SpringBootTest(properties = {
+        "filmorate.admission.enabled=false",
+        "filmorate.popular.refresh-interval-ms=3600000",
+        "logging.level.ru.yandex.practicum.filmorate.log=warn"
+})
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@Import(StatementCounter.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Slf4j
+class PerformanceRegressionTest {
+    private static final String BASELINE = "performance-baseline.properties";
+    private static final int USERS = 500;
+    private static final int FILMS = 2000;
+    private static final int LIKES_PER_USER = 20;
+    private static final int FRIENDS_PER_USER = 20;
+    private static final String[] WORDS = {"star", "night", "river", "king", "ghost", "city", "winter", "dream"};
+    private static final Map<String, String> ENDPOINTS = new LinkedHashMap<>();
+
+    static {
+        ENDPOINTS.put("films.all", "/films");
+        ENDPOINTS.put("films.by-ids", "/films?ids=1,5,10,50,100,500,1000,1500,1999,2000");
+        ENDPOINTS.put("films.by-id", "/films/1");
+        ENDPOINTS.put("films.likes", "/films/1/likes");
+        ENDPOINTS.put("films.popular", "/films/popular?count=10");
+        ENDPOINTS.put("films.popular.genre", "/films/popular?count=10&genreId=1");
+        ENDPOINTS.put("films.popular.year", "/films/popular?count=10&year=1990");
+        ENDPOINTS.put("films.trending", "/films/trending?window=24h");
+        ENDPOINTS.put("films.search", "/films/search?q=star");
+        ENDPOINTS.put("users.by-id", "/users/1");
+        ENDPOINTS.put("users.friends", "/users/1/friends");
+        ENDPOINTS.put("users.common-friends", "/users/1/friends/common/2");
+        ENDPOINTS.put("users.suggestions", "/users/1/friends/suggestions");
+        ENDPOINTS.put("users.path", "/users/1/path/400");
+        ENDPOINTS.put("users.recommendations", "/users/1/recommendations");
+        ENDPOINTS.put("users.feed", "/users/1/feed");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private DomainEventBus eventBus;
+    @Autowired
+    private PopularFilmsSnapshot popularSnapshot;
+    @Autowired
+    private ObjectProvider<FilmLikesCounters> likesCounters;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final boolean writeBaseline = Boolean.getBoolean("performance.write-baseline");
+    private Properties baseline;
+
+    @BeforeAll
+    void seed() throws Exception {
+        baseline = new Properties();
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(BASELINE)) {
+            if (in != null) {
+                baseline.load(in);
+            }
+        }
+        Random random = new Random(42);
+        for (int i = 1; i <= USERS; i++) {
+            userService.addUser(User.builder()
+                    .email("user" + i + "@yandex.ru")
+                    .login("user" + i)
+                    .name("User " + i)
+                    .birthday(LocalDate.of(1970 + i % 40, 1 + i % 12, 1 + i % 28))
+                    .build());
+        }
+        for (int i = 1; i <= FILMS; i++) {
+            filmService.addFilm(Film.builder()
+                    .name(WORDS[i % WORDS.length] + " " + i)
+                    .description("About " + WORDS[random.nextInt(WORDS.length)] + " and "
+                            + WORDS[random.nextInt(WORDS.length)])
+                    .releaseDate(LocalDate.of(1960 + i % 60, 1, 1))
+                    .duration(90 + i % 60)
+                    .mpa(Mpa.builder().id(1 + i % 5).build())
+                    .genres(List.of(Genre.builder().id(1 + i % 6).build()))
+                    .build());
+        }
+        List<LikeBatchItem> likes = new ArrayList<>();
+        for (long userId = 1; userId <= USERS; userId++) {
+            // Лайки смещены к началу списка, чтобы у популярных фильмов были разные счетчики
+            Set<Long> films = new HashSet<>();
+            while (films.size() < LIKES_PER_USER) {
+                films.add(1 + (long) (FILMS * Math.pow(random.nextDouble(), 3)));
+            }
+            for (long filmId : films) {
+                likes.add(LikeBatchItem.builder().filmId(filmId).userId(userId).operation(Operation.ADD).build());
+                if (likes.size() == 1000) {
+                    filmService.applyLikes(likes);
+                    likes = new ArrayList<>();
+                }
+            }
+        }
+        if (!likes.isEmpty()) {
+            filmService.applyLikes(likes);
+        }
+        for (long userId = 1; userId <= USERS; userId++) {
+            Set<Long> friends = new HashSet<>();
+            while (friends.size() < FRIENDS_PER_USER) {
+                long friendId = 1 + random.nextInt(USERS);
+                if (friendId != userId) {
+                    friends.add(friendId);
+                }
+            }
+            List<FriendBatchItem> items = new ArrayList<>();
+            friends.forEach(friendId -> items.add(FriendBatchItem.builder()
+                    .friendId(friendId)
+                    .operation(Operation.ADD)
+                    .build()));
+            userService.applyFriends(userId, items);
+        }
+        likesCounters.ifAvailable(FilmLikesCounters::flush);
+        assertThat(eventBus.flush(10_000), is(true));
+        popularSnapshot.refresh();
+    }
+
+    @Test
+    void statementAndAllocationBudgetsTest() throws Exception {
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported(), "Allocation counting is not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        List<String> violations = new ArrayList<>();
+        Properties measured = new Properties();
+        for (Map.Entry<String, String> endpoint : ENDPOINTS.entrySet()) {
+            String name = endpoint.getKey();
+            String url = endpoint.getValue();
+            for (int i = 0; i < 20; i++) {
+                request(url);
+            }
+            long statements = 0;
+            long[] allocated = new long[20];
+            long threadId = Thread.currentThread().getId();
+            for (int i = 0; i < allocated.length; i++) {
+                StatementCounter.reset();
+                long before = threads.getThreadAllocatedBytes(threadId);
+                request(url);
+                allocated[i] = threads.getThreadAllocatedBytes(threadId) - before;
+                statements = Math.max(statements, StatementCounter.get());
+            }
+            Arrays.sort(allocated);
+            long allocatedKb = allocated[allocated.length / 2] / 1024;
+            log.info("{}: {} statements, {} KB allocated", name, statements, allocatedKb);
+            measured.setProperty(name + ".statements", String.valueOf(statements));
+            // Запас на разброс JIT и сборщика мусора
+            measured.setProperty(name + ".allocated-kb", String.valueOf(allocatedKb * 3 / 2 + 64));
+            check(violations, name + ".statements", statements);
+            check(violations, name + ".allocated-kb", allocatedKb);
+        }
+        if (writeBaseline) {
+            writeBaseline(measured);
+            return;
+        }
+        assertThat("Горячие эндпоинты вышли за бюджеты " + BASELINE, violations, empty());
+    }
+
+    @Test
+    @Tag("performance")
+    void latencyBudgetsTest() throws Exception {
+        double tolerance = Double.parseDouble(System.getProperty("performance.latency-tolerance", "1.5"));
+        List<String> violations = new ArrayList<>();
+        Properties measured = new Properties();
+        for (Map.Entry<String, String> endpoint : ENDPOINTS.entrySet()) {
+            String name = endpoint.getKey();
+            String url = endpoint.getValue();
+            for (int i = 0; i < 200; i++) {
+                request(url);
+            }
+            long[] latencies = new long[500];
+            for (int i = 0; i < latencies.length; i++) {
+                long start = System.nanoTime();
+                request(url);
+                latencies[i] = (System.nanoTime() - start) / 1000;
+            }
+            Arrays.sort(latencies);
+            long p95 = latencies[latencies.length * 95 / 100];
+            log.info("{}: p95 {} us", name, p95);
+            measured.setProperty(name + ".p95-us", String.valueOf(p95));
+            String key = name + ".p95-us";
+            if (baseline.getProperty(key) == null) {
+                violations.add(key + " is missing");
+            } else if (p95 > Long.parseLong(baseline.getProperty(key)) * tolerance) {
+                violations.add(String.format("%s: %s > %s x %s", key, p95, baseline.getProperty(key), tolerance));
+            }
+        }
+        if (writeBaseline) {
+            writeBaseline(measured);
+            return;
+        }
+        assertThat("p95 горячих эндпоинтов хуже базовой линии " + BASELINE, violations, empty());
+    }
+
+    private void request(String url) throws Exception {
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+    }
+
+    private void check(List<String> violations, String key, long value) {
+        String budget = baseline.getProperty(key);
+        if (budget == null) {
+            violations.add(key + " is missing");
+        } else if (value > Long.parseLong(budget)) {
+            violations.add(String.format("%s: %s > %s", key, value, budget));
+        }
+    }
+
+    // Дописывает измеренные значения к уже записанным другим тестом этого запуска
+    private synchronized void writeBaseline(Properties measured) throws IOException {
+        Path path = Paths.get("target", BASELINE);
+        Properties merged = new Properties();
+        if (Files.exists(path)) {
+            try (InputStream in = Files.newInputStream(path)) {
+                merged.load(in);
+            }
+        }
+        merged.putAll(measured);
+        Files.createDirectories(path.getParent());
+        try (OutputStream out = Files.newOutputStream(path)) {
+            merged.store(out, "Measured by PerformanceRegressionTest");
+        }
+        log.info("Baseline written to {}", path.toAbsolutePath());
+    }
+}
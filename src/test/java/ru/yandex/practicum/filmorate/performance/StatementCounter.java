@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.performance;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Считает SQL-запросы, выполненные текущим потоком: DataSource оборачивается прокси, а у выданных соединением
+// Statement перехватываются вызовы execute*. Пакет executeBatch считается одним запросом
+public class StatementCounter implements BeanPostProcessor {
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static long get() {
+        return COUNT.get()[0];
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource)) {
+            return bean;
+        }
+        return new DelegatingDataSource((DataSource) bean) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return (Connection) proxy(Connection.class, super.getConnection(), false);
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return (Connection) proxy(Connection.class, super.getConnection(username, password), false);
+            }
+        };
+    }
+
+    private static Object proxy(Class<?> type, Object target, boolean statement) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object result = invoke(method, target, args);
+            if (statement && method.getName().startsWith("execute")) {
+                COUNT.get()[0]++;
+            }
+            if (!statement && result instanceof Statement && method.getReturnType().isInterface()) {
+                return proxy(method.getReturnType(), result, true);
+            }
+            return result;
+        };
+        return Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
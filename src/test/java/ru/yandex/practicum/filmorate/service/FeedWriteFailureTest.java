@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+// Ошибка записи в ленту не должна теряться в шине событий: клиент получает ее вместе с ответом
+@SpringBootTest
+@AutoConfigureTestDatabase
+class FeedWriteFailureTest {
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+    @SpyBean
+    private FeedService feedService;
+
+    @Test
+    void feedWriteFailureReachesCallerTest() {
+        User user = userService.addUser(user("user1"));
+        User friend = userService.addUser(user("user2"));
+        Film film = filmService.addFilm(Film.builder()
+                .name("Film1")
+                .description("Description1")
+                .releaseDate(LocalDate.of(1960, 1, 1))
+                .duration(109)
+                .mpa(Mpa.builder().id(1).build())
+                .build());
+        doThrow(new IllegalStateException("feed is down"))
+                .when(feedService).addEvent(any(), eq(EventType.LIKE), any(), anyLong());
+        doThrow(new IllegalStateException("feed is down"))
+                .when(feedService).addEvent(any(), eq(EventType.FRIEND), any(), anyLong());
+
+        assertThrows(IllegalStateException.class, () -> filmService.addLike(film.getId(), user.getId()));
+        assertThrows(IllegalStateException.class, () -> filmService.unlike(film.getId(), user.getId()));
+        assertThrows(IllegalStateException.class, () -> userService.addAsFriend(user.getId(), friend.getId()));
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .email(login + "@yandex.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class SingleFlightTest {
+    private static final int WAITERS = 8;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(WAITERS + 1);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsShareOneLoadTest() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(5000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = submitWaiters(singleFlight, "popular", () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "films";
+        });
+        release.countDown();
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS), equalTo("films"));
+        }
+        assertThat("Одинаковые запросы не склеились", loads.get(), equalTo(1));
+        assertThat("После завершения загрузка не повторяется", singleFlight.execute("popular", () -> "fresh"),
+                equalTo("fresh"));
+    }
+
+    @Test
+    void errorIsPropagatedToAllWaitersTest() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(5000);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = submitWaiters(singleFlight, 1L, () -> {
+            await(release);
+            throw new ObjectNotFoundException("Film with id 1 not found");
+        });
+        release.countDown();
+        for (Future<String> result : results) {
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                    () -> result.get(5, TimeUnit.SECONDS));
+            assertThat(e.getCause(), instanceOf(ObjectNotFoundException.class));
+        }
+    }
+
+    @Test
+    void waiterTimeoutTest() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(50);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("slow", () -> {
+            started.countDown();
+            await(release);
+            return "done";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS), is(true));
+        Assertions.assertThrows(ServiceUnavailableException.class,
+                () -> singleFlight.execute("slow", () -> "other"));
+        release.countDown();
+        assertThat("Таймаут ожидающего прервал ведущий запрос", leader.get(5, TimeUnit.SECONDS), equalTo("done"));
+    }
+
+    private List<Future<String>> submitWaiters(SingleFlight singleFlight, Object key, Callable<String> loader)
+            throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> singleFlight.execute(key, () -> {
+            started.countDown();
+            try {
+                return loader.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        })));
+        assertThat(started.await(5, TimeUnit.SECONDS), is(true));
+        for (int i = 0; i < WAITERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute(key, () -> "duplicate")));
+        }
+        Thread.sleep(100);
+        return results;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+// Запуск: mvn test -Pbenchmark
+@Tag("benchmark")
+@Slf4j
+class FilmLikesCountersBenchmarkTest {
+    private static final long HOT_FILM_ID = 1;
+    private static final long RUN_MILLIS = 500;
+
+    @Test
+    void hotFilmContentionTest() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads <= Math.max(2, cores * 2); threads *= 2) {
+            threadCounts.add(threads);
+        }
+        double adderSingle = 0;
+        double adderMax = 0;
+        double atomicMax = 0;
+        log.info("threads | LongAdder ops/ms | AtomicLong ops/ms");
+        for (int threads : threadCounts) {
+            FilmLikesCounters counters = new FilmLikesCounters(null);
+            long adderOps = run(threads, counters::increment);
+            assertThat("Приращения потеряны", counters.getPending(HOT_FILM_ID), equalTo(adderOps));
+
+            Map<Long, AtomicLong> atomics = new ConcurrentHashMap<>();
+            long atomicOps = run(threads, filmId -> atomics.computeIfAbsent(filmId, id -> new AtomicLong())
+                    .incrementAndGet());
+            assertThat("Приращения потеряны", atomics.get(HOT_FILM_ID).get(), equalTo(atomicOps));
+
+            double adderThroughput = (double) adderOps / RUN_MILLIS;
+            double atomicThroughput = (double) atomicOps / RUN_MILLIS;
+            log.info("{} | {} | {}", threads, Math.round(adderThroughput), Math.round(atomicThroughput));
+            if (threads == 1) {
+                adderSingle = adderThroughput;
+            }
+            if (threads <= cores) {
+                adderMax = adderThroughput;
+                atomicMax = atomicThroughput;
+            }
+        }
+        Assumptions.assumeTrue(cores >= 4, "Scaling check needs at least 4 cores");
+        assertThat("LongAdder не масштабируется с числом ядер", adderMax, greaterThan(adderSingle * 1.5));
+        assertThat("LongAdder медленнее AtomicLong под конкуренцией", adderMax, greaterThan(atomicMax));
+    }
+
+    private long run(int threads, LongConsumer increment) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+                long ops = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int j = 0; j < 100; j++) {
+                        increment.accept(HOT_FILM_ID);
+                    }
+                    ops += 100;
+                }
+                return ops;
+            }));
+        }
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        executor.shutdown();
+        return total;
+    }
+}
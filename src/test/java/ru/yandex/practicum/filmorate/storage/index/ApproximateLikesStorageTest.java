@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.dao.LikesDbStorage;
+import ru.yandex.practicum.filmorate.util.CountMinSketch;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ApproximateLikesStorageTest {
+    private static final int FILMS = 5000;
+    private static final int LIKES = 200_000;
+    private static final double EPSILON = 0.0001;
+    private static final double DELTA = 0.001;
+
+    private LikesDbStorage exactStorage;
+    private ApproximateLikesStorage approximateStorage;
+    private final Map<Long, Integer> exactCounts = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        exactStorage = new LikesDbStorage(null, null) {
+            @Override
+            public boolean addLike(long filmId, long userId) {
+                return true;
+            }
+
+            @Override
+            public boolean unlike(long filmId, long userId) {
+                return true;
+            }
+        };
+        approximateStorage = new ApproximateLikesStorage(exactStorage, EPSILON, DELTA, 200);
+    }
+
+    @Test
+    void approximateTopMatchesExactTopTest() {
+        long userId = 1;
+        for (long filmId : zipfStream()) {
+            approximateStorage.addLike(filmId, userId++);
+            exactCounts.merge(filmId, 1, Integer::sum);
+        }
+        for (long filmId = 1; filmId <= 20; filmId++) {
+            approximateStorage.unlike(filmId, userId);
+            exactCounts.merge(filmId, -1, Integer::sum);
+        }
+        List<Long> exactTop = exactTop(20);
+        List<Long> approximateTop = approximateStorage.getTheBestFilms(20);
+        Set<Long> overlap = new HashSet<>(approximateTop);
+        overlap.retainAll(exactTop);
+        assertThat("Приближенный топ-20 расходится с точным больше чем на 2 фильма", overlap.size(),
+                greaterThanOrEqualTo(18));
+        assertThat("Первые 5 фильмов приближенного топа отличаются от точного",
+                approximateTop.subList(0, 5), equalTo(exactTop.subList(0, 5)));
+    }
+
+    @Test
+    void countMinSketchErrorBoundTest() {
+        CountMinSketch sketch = new CountMinSketch(EPSILON, DELTA);
+        for (long filmId : zipfStream()) {
+            sketch.add(filmId, 1);
+            exactCounts.merge(filmId, 1, Integer::sum);
+        }
+        long bound = (long) Math.ceil(EPSILON * sketch.getTotal());
+        long violations = exactCounts.entrySet().stream()
+                .filter(entry -> sketch.estimate(entry.getKey()) < entry.getValue()
+                        || sketch.estimate(entry.getKey()) - entry.getValue() > bound)
+                .count();
+        assertThat("Оценки вне границы epsilon * N встречаются чаще, чем delta",
+                (double) violations / exactCounts.size(), lessThanOrEqualTo(DELTA));
+    }
+
+    @Test
+    void fallbackToExactCountingTest() {
+        exactStorage = mock(LikesDbStorage.class);
+        when(exactStorage.addLike(anyLong(), anyLong())).thenReturn(true);
+        approximateStorage = new ApproximateLikesStorage(exactStorage, EPSILON, DELTA, 200);
+        approximateStorage.addLike(1, 1);
+        approximateStorage.addLike(2, 1);
+        when(exactStorage.getTheBestFilms(5)).thenReturn(List.of(2L, 1L, 3L, 4L, 5L));
+        assertThat(approximateStorage.getTheBestFilms(5), contains(2L, 1L, 3L, 4L, 5L));
+        verify(exactStorage).getTheBestFilms(5);
+    }
+
+    // Лайки по закону Ципфа: популярность фильма i пропорциональна 1 / i
+    private List<Long> zipfStream() {
+        double[] cumulative = new double[FILMS];
+        double sum = 0;
+        for (int i = 0; i < FILMS; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(42);
+        List<Long> stream = new ArrayList<>(LIKES);
+        for (int i = 0; i < LIKES; i++) {
+            int position = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            stream.add((long) (position < 0 ? -position - 1 : position) + 1);
+        }
+        return stream;
+    }
+
+    private List<Long> exactTop(int count) {
+        return exactCounts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.storage.writebehind;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class WriteBehindQueueTest {
+    private WriteBehindQueue queue;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        queue.stop();
+    }
+
+    @Test
+    void mutationsAreWrittenInOrderTest() throws Exception {
+        List<Long> written = Collections.synchronizedList(new ArrayList<>());
+        List<Long> applied = Collections.synchronizedList(new ArrayList<>());
+        queue = start(batch -> batch.forEach(mutation -> written.add(mutation.getFilmId())), 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicInteger sequence = new AtomicInteger();
+        for (int i = 0; i < 2000; i++) {
+            executor.submit(() -> queue.write(1, () -> {
+                long filmId = sequence.incrementAndGet();
+                applied.add(filmId);
+                return filmId;
+            }, filmId -> List.of(Mutation.like(filmId, 1))));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+        assertThat(queue.flush(10_000), is(true));
+        assertThat("Порядок записи расходится с порядком изменений в памяти", written, equalTo(applied));
+        assertThat(queue.snapshot(), allOf(hasEntry("applied", 2000L), hasEntry("pending", 0L)));
+        assertThat(queue.snapshot().get("batches"), lessThan(2000L));
+    }
+
+    @Test
+    void failedBatchIsRetriedTest() throws Exception {
+        AtomicInteger failures = new AtomicInteger(2);
+        List<Mutation> written = Collections.synchronizedList(new ArrayList<>());
+        queue = start(batch -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("Database is unavailable");
+            }
+            written.addAll(batch);
+        }, 1000);
+        queue.write(1, () -> true, added -> List.of(Mutation.like(1, 1)));
+        assertThat(queue.flush(10_000), is(true));
+        assertThat(written, hasSize(1));
+        assertThat(queue.snapshot(), allOf(hasEntry("retries", 2L), hasEntry("applied", 1L),
+                hasEntry("failed", 0L)));
+    }
+
+    @Test
+    void brokenMutationIsDroppedAloneTest() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<Mutation> written = Collections.synchronizedList(new ArrayList<>());
+        queue = start(batch -> {
+            awaitQuietly(blocked);
+            if (batch.stream().anyMatch(mutation -> mutation.getFilmId() == 2)) {
+                throw new IllegalStateException("Broken row");
+            }
+            written.addAll(batch);
+        }, 1000);
+        for (long filmId = 1; filmId <= 3; filmId++) {
+            long id = filmId;
+            queue.write(1, () -> id, added -> List.of(Mutation.like(added, 1)));
+        }
+        blocked.countDown();
+        assertThat(queue.flush(10_000), is(true));
+        assertThat(written.stream().map(Mutation::getFilmId).collect(Collectors.toList()),
+                contains(1L, 3L));
+        assertThat(queue.snapshot(), allOf(hasEntry("applied", 2L), hasEntry("failed", 1L)));
+    }
+
+    @Test
+    void fullQueueRejectsChangeBeforeApplyingItTest() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        queue = start(batch -> awaitQuietly(blocked), 2);
+        queue.write(1, () -> true, added -> List.of(Mutation.like(1, 1)));
+        queue.write(1, () -> true, added -> List.of(Mutation.like(2, 1)));
+        AtomicInteger applied = new AtomicInteger();
+        Assertions.assertThrows(ServiceUnavailableException.class, () -> queue.write(1, applied::incrementAndGet,
+                added -> List.of(Mutation.like(3, 1))));
+        assertThat("Изменение применено в памяти без места в очереди", applied.get(), equalTo(0));
+        Thread.sleep(20);
+        assertThat(queue.getLagMillis(), greaterThanOrEqualTo(20L));
+        blocked.countDown();
+        assertThat(queue.flush(10_000), is(true));
+        assertThat(queue.getLagMillis(), equalTo(0L));
+    }
+
+    private WriteBehindQueue start(Consumer<List<Mutation>> writer, int capacity) {
+        WriteBehindQueue started = new WriteBehindQueue(writer, capacity, 100, 3, 1, 50, 10_000);
+        started.start();
+        return started;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}